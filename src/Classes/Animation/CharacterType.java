@@ -1,5 +1,5 @@
 package Classes.Animation;
-import Classes.PlayerTypes.BotPlayer;
+import Classes.PlayerTypes.Difficulty;
 
 /**
  * Created by Jonathan Roop on 8/1/2017.
@@ -11,14 +11,15 @@ public enum CharacterType {
     GEARSHIFT(new AnimationName[] {AnimationName.GEARSHIFT_VICTORY, AnimationName.GEARSHIFT_CONTENT, AnimationName.GEARSHIFT_WORRIED, AnimationName.GEARSHIFT_DEFEAT, AnimationName.GEARSHIFT_DISCONNECTED}, true, null),
     CLOUDESTINE(new AnimationName[] {AnimationName.CLOUDESTINE_VICTORY, AnimationName.CLOUDESTINE_CONTENT, AnimationName.CLOUDESTINE_WORRIED, AnimationName.CLOUDESTINE_DEFEAT, AnimationName.CLOUDESTINE_DISCONNECTED}, true, null),
     CHARCOAL(new AnimationName[] {AnimationName.CHARCOAL_VICTORY, AnimationName.CHARCOAL_CONTENT, AnimationName.CHARCOAL_WORRIED, AnimationName.CHARCOAL_DEFEAT, AnimationName.CHARCOAL_DISCONNECTED}, true, null),
-    FILLY_BOT_EASY(new AnimationName[] {AnimationName.FILLY_BOT_EASY_VICTORY, AnimationName.FILLY_BOT_EASY_CONTENT, AnimationName.FILLY_BOT_EASY_WORRIED, AnimationName.FILLY_BOT_EASY_DEFEAT, AnimationName.FILLY_BOT_EASY_DISCONNECTED}, true, BotPlayer.Difficulty.EASY),
-    FILLY_BOT_MEDIUM(new AnimationName[] {AnimationName.FILLY_BOT_MEDIUM_VICTORY, AnimationName.FILLY_BOT_MEDIUM_CONTENT, AnimationName.FILLY_BOT_MEDIUM_WORRIED, AnimationName.FILLY_BOT_MEDIUM_DEFEAT, AnimationName.FILLY_BOT_MEDIUM_DISCONNECTED}, false, BotPlayer.Difficulty.MEDIUM),
-    FILLY_BOT_HARD(new AnimationName[] {AnimationName.FILLY_BOT_HARD_VICTORY, AnimationName.FILLY_BOT_HARD_CONTENT, AnimationName.FILLY_BOT_HARD_WORRIED, AnimationName.FILLY_BOT_HARD_DEFEAT, AnimationName.FILLY_BOT_HARD_DISCONNECTED}, false, BotPlayer.Difficulty.HARD),
+    FILLY_BOT_EASY(new AnimationName[] {AnimationName.FILLY_BOT_EASY_VICTORY, AnimationName.FILLY_BOT_EASY_CONTENT, AnimationName.FILLY_BOT_EASY_WORRIED, AnimationName.FILLY_BOT_EASY_DEFEAT, AnimationName.FILLY_BOT_EASY_DISCONNECTED}, true, Difficulty.EASY),
+    FILLY_BOT_MEDIUM(new AnimationName[] {AnimationName.FILLY_BOT_MEDIUM_VICTORY, AnimationName.FILLY_BOT_MEDIUM_CONTENT, AnimationName.FILLY_BOT_MEDIUM_WORRIED, AnimationName.FILLY_BOT_MEDIUM_DEFEAT, AnimationName.FILLY_BOT_MEDIUM_DISCONNECTED}, false, Difficulty.MEDIUM),
+    FILLY_BOT_HARD(new AnimationName[] {AnimationName.FILLY_BOT_HARD_VICTORY, AnimationName.FILLY_BOT_HARD_CONTENT, AnimationName.FILLY_BOT_HARD_WORRIED, AnimationName.FILLY_BOT_HARD_DEFEAT, AnimationName.FILLY_BOT_HARD_DISCONNECTED}, false, Difficulty.HARD),
+    FILLY_BOT_EXPERT(new AnimationName[] {AnimationName.FILLY_BOT_HARD_VICTORY, AnimationName.FILLY_BOT_HARD_CONTENT, AnimationName.FILLY_BOT_HARD_WORRIED, AnimationName.FILLY_BOT_HARD_DEFEAT, AnimationName.FILLY_BOT_HARD_DISCONNECTED}, false, Difficulty.EXPERT), // Shares the HARD bot's animations.
     UNKNOWN_CHARACTER(new AnimationName[] {AnimationName.UNKNOWN_CHARACTER, AnimationName.UNKNOWN_CHARACTER, AnimationName.UNKNOWN_CHARACTER, AnimationName.UNKNOWN_CHARACTER, AnimationName.UNKNOWN_CHARACTER}, false, null);
 
     private AnimationName[] animationNames;
     private boolean playable; // Can a human player use this character?
-    private BotPlayer.Difficulty botDifficulty;
+    private Difficulty botDifficulty;
 
     public enum CharacterAnimationState{
         VICTORIOUS(-1,-1), CONTENT(0,12), WORRIED(13,19), DEFEATED(20,Integer.MAX_VALUE), DISCONNECTED(Integer.MAX_VALUE,Integer.MAX_VALUE);
@@ -33,7 +34,7 @@ public enum CharacterType {
         }
     }
 
-    CharacterType(AnimationName[] animationNames, boolean playable, BotPlayer.Difficulty botDifficulty){
+    CharacterType(AnimationName[] animationNames, boolean playable, Difficulty botDifficulty){
         this.animationNames = animationNames;
         this.playable = playable;
         this.botDifficulty = botDifficulty;
@@ -53,7 +54,7 @@ public enum CharacterType {
         return playable;
     }
 
-    public BotPlayer.Difficulty getBotDifficulty() {
+    public Difficulty getBotDifficulty() {
         return botDifficulty;
     }
 }
@@ -1,31 +1,32 @@
 package Classes.Animation;
 
+import Classes.Engine.Simulation;
+
 /**
  * Note: Orbs are assumed to be 46 pixels in diameter. This cannot easily be changed.
  */
 public enum OrbColor {
-    RED(AnimationName.RED_ORB_IMPLODING, 720.0, 'R'),
-    GREEN(AnimationName.GREEN_ORB_IMPLODING, 720.0, 'G'),
-    BLUE(AnimationName.BLUE_ORB_IMPLODING, 720.0, 'B'),
-    YELLOW(AnimationName.YELLOW_ORB_IMPLODING, 720.0, 'Y'),
-    BLACK(AnimationName.BLACK_ORB_IMPLODING, 720.0, 'K'),
-    WHITE(AnimationName.WHITE_ORB_IMPLODING, 720.0, 'W');
+    RED(AnimationName.RED_ORB_IMPLODING, 'R'),
+    GREEN(AnimationName.GREEN_ORB_IMPLODING, 'G'),
+    BLUE(AnimationName.BLUE_ORB_IMPLODING, 'B'),
+    YELLOW(AnimationName.YELLOW_ORB_IMPLODING, 'Y'),
+    BLACK(AnimationName.BLACK_ORB_IMPLODING, 'K'),
+    WHITE(AnimationName.WHITE_ORB_IMPLODING, 'W');
 
     private AnimationName implodeAnimationName;
-    private double orbSpeed; // pixels per second
     private char symbol; // Symbol used to specify this type of Orb in a puzzle file or ammunition file.
 
-    OrbColor(AnimationName implodeAnimationName, double orbSpeed, char symbol){
+    OrbColor(AnimationName implodeAnimationName, char symbol){
         this.implodeAnimationName = implodeAnimationName;
-        this.orbSpeed = orbSpeed;
         this.symbol = symbol;
     }
 
     public AnimationName getImplodeAnimationName(){
         return implodeAnimationName;
     }
+    // pixels per second. The speeds are kept by the engine, which works with color ordinals.
     public double getOrbSpeed(){
-        return orbSpeed;
+        return Simulation.getOrbSpeed(ordinal());
     }
     public char getSymbol(){
         return symbol;
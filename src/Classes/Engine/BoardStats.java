@@ -0,0 +1,30 @@
+package Classes.Engine;
+
+/**
+ * Summary queries about an OrbBoard that are cheap enough to be made every frame, by the game logic, the UI and the
+ * bots alike. The board keeps the counts up to date as orbs are added and removed, so every query takes constant time.
+ */
+public interface BoardStats {
+    // The number of orbs on the given row (row ARRAY_HEIGHT is the death row).
+    int getRowCount(int i);
+
+    boolean isRowEmpty(int i);
+
+    // The lowest row (counting the death row) that has an orb on it, or -1 if the board is empty.
+    int getLowestOccupiedRow();
+
+    // The number of orbs in the orbArray rows. Death orbs are not counted.
+    int getArrayOrbCount();
+
+    // The number of orbs of the given color (by ordinal) in the orbArray rows.
+    int getArrayColorCount(int colorOrdinal);
+
+    int getDeathOrbCount();
+
+    // The rows that have changed since the dirty rows were last cleared, as a bitmask: bit i is set if row i changed.
+    long getDirtyRows();
+
+    // A hash of the board's contents (see OrbBoard). Boards with the same orbs have the same hash, so comparing hashes
+    // is a cheap way to check that two copies of a board agree.
+    long getHash();
+}
@@ -0,0 +1,25 @@
+package Classes.Engine;
+
+// Collisions are reused from frame to frame by Outcome, so the fields are mutable.
+public class Collision{
+    public static final int WALL = -1; // Value of arrayI for a collision with a wall.
+    public static final int CEILING = -2; // Value of arrayI for a collision with the ceiling.
+    public static final int SHOOTER = -3; // Value of arrayI for a collision with another shooting orb, whose slot is then in arrayJ.
+    public static final int NO_SHOOTER = -1; // Value of shooterSlot when there is no collision.
+
+    public int shooterSlot; // The slot of the shooting orb in the ShootingOrbBuffer that is being simulated.
+    public int arrayI; // The coordinates of the array (or death) orb that was hit. arrayI may instead be WALL, CEILING or SHOOTER.
+    public int arrayJ;
+    public double timeToCollision; // For the collisions in an Outcome, the time since the start of the frame.
+
+    public void set(int shooterSlot, int arrayI, int arrayJ, double timeToCollision){
+        this.shooterSlot = shooterSlot;
+        this.arrayI = arrayI;
+        this.arrayJ = arrayJ;
+        this.timeToCollision = timeToCollision;
+    }
+
+    public void set(Collision other){
+        set(other.shooterSlot, other.arrayI, other.arrayJ, other.timeToCollision);
+    }
+}
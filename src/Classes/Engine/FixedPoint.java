@@ -0,0 +1,66 @@
+package Classes.Engine;
+
+/**
+ * Fixed-point arithmetic for the deterministic physics mode (see GameSettings.setDeterministicPhysics). Values are
+ * stored in longs with FRACTION_BITS fractional bits. Angles are stored as ints in "angle units", of which there are
+ * ANGLE_UNITS_PER_TURN in a full circle, and their sines and cosines come from a lookup table. The table is built with
+ * StrictMath, so every machine computes exactly the same values.
+ */
+public class FixedPoint {
+    public static final int FRACTION_BITS = 16;
+    public static final long ONE = 1L<<FRACTION_BITS;
+    public static final int ANGLE_UNITS_PER_TURN = 1<<16;
+    public static final int HALF_TURN = ANGLE_UNITS_PER_TURN/2;
+    private static final int QUARTER_TURN = ANGLE_UNITS_PER_TURN/4;
+
+    private static final long[] SINE_TABLE = new long[QUARTER_TURN+1]; // The first quarter of the sine wave. The rest of it is found by symmetry.
+    static{
+        for(int k=0; k<=QUARTER_TURN; k++){
+            SINE_TABLE[k] = StrictMath.round(StrictMath.sin(2*StrictMath.PI*k/ANGLE_UNITS_PER_TURN) * ONE);
+        }
+    }
+
+    public static long toFixed(double value){
+        return StrictMath.round(value * ONE);
+    }
+
+    public static double toDouble(long value){
+        return value / (double) ONE;
+    }
+
+    // Rounds the value to the nearest value that can be represented in fixed-point.
+    public static double quantize(double value){
+        return toDouble(toFixed(value));
+    }
+
+    // Multiplies two fixed-point values, rounding the result to the nearest fixed-point value.
+    public static long multiply(long a, long b){
+        return (a*b + (ONE>>1)) >> FRACTION_BITS;
+    }
+
+    // Returns the angle in the range [0, ANGLE_UNITS_PER_TURN).
+    public static int toAngleUnits(double radians){
+        return (int) StrictMath.round(radians * ANGLE_UNITS_PER_TURN / (2*StrictMath.PI)) & (ANGLE_UNITS_PER_TURN-1);
+    }
+
+    // Returns the angle in the range (-PI, PI].
+    public static double toRadians(int angleUnits){
+        angleUnits &= ANGLE_UNITS_PER_TURN-1;
+        if(angleUnits > HALF_TURN) angleUnits -= ANGLE_UNITS_PER_TURN;
+        return angleUnits * (2*StrictMath.PI) / ANGLE_UNITS_PER_TURN;
+    }
+
+    // note: Returns a fixed-point value.
+    public static long sin(int angleUnits){
+        angleUnits &= ANGLE_UNITS_PER_TURN-1;
+        if(angleUnits < QUARTER_TURN) return SINE_TABLE[angleUnits];
+        else if(angleUnits < HALF_TURN) return SINE_TABLE[HALF_TURN - angleUnits];
+        else if(angleUnits < HALF_TURN + QUARTER_TURN) return -SINE_TABLE[angleUnits - HALF_TURN];
+        else return -SINE_TABLE[ANGLE_UNITS_PER_TURN - angleUnits];
+    }
+
+    // note: Returns a fixed-point value.
+    public static long cos(int angleUnits){
+        return sin(angleUnits + QUARTER_TURN);
+    }
+}
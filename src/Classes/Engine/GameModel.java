@@ -0,0 +1,66 @@
+package Classes.Engine;
+
+import java.util.List;
+
+/**
+ * The rules that involve more than one team: orbs transferred from one PlayPanel to the others, and deciding who has
+ * won. GameScene calls these once every PlayPanel has been ticked, and so does BotTournament.
+ */
+public class GameModel {
+    // Results of checkForVictory(), besides the number of the winning team:
+    public static final int NOBODY_WON = -1; // The only team failed its puzzle.
+    public static final int NO_RESULT = -2; // The game isn't over yet.
+    public static final int TIE = -3; // Every team was eliminated on the same frame.
+
+    private final List<PanelModel> panelModels;
+
+    // note: the PanelModels must be given in the same order on every machine, so that the transfers come out the same.
+    public GameModel(List<PanelModel> panelModels){
+        this.panelModels = panelModels;
+    }
+
+    public List<PanelModel> getPanelModels(){
+        return panelModels;
+    }
+
+    // Sends each team's transfer-out orbs to every other team.
+    public void transferOrbs(){
+        for(PanelModel fromPanel : panelModels){
+            IntList transferOutColors = fromPanel.getTransferOutColors();
+            if(transferOutColors.isEmpty()) continue;
+            for(PanelModel toPanel : panelModels){
+                if(fromPanel!=toPanel) toPanel.receiveTransferOrbs(transferOutColors);
+            }
+            transferOutColors.clear();
+        }
+    }
+
+    // Returns the number of the team that has won, or one of NOBODY_WON, NO_RESULT and TIE.
+    // Todo: what if 2 players declare victory at the exact same time?
+    public int checkForVictory(){
+        // check to see whether anybody's won a quick victory by clearing their PlayPanel:
+        for(PanelModel panelModel : panelModels){
+            if(panelModel.getState()==PanelModel.TeamState.VICTORIOUS) return panelModel.getTeam();
+        }
+
+        // In competitive multiplayer (or Vs Computer) games, check to see whether there's only 1 live team left
+        if(panelModels.size()>1){
+            int liveTeams = 0;
+            int liveTeam = NO_RESULT;
+            for(PanelModel panelModel : panelModels){
+                if(!panelModel.isEliminated()){
+                    liveTeams++;
+                    liveTeam = panelModel.getTeam();
+                }
+            }
+            // Todo: in the offhand chance that everyone died at the exact same time, declare a tie or pick a winner at random from those who just died this turn.
+            if(liveTeams==0) return TIE;
+            else if(liveTeams==1) return liveTeam;
+            else return NO_RESULT;
+        }
+
+        // In puzzle games, check to see whether the only existing team has lost:
+        else if(panelModels.get(0).isEliminated()) return NOBODY_WON;
+        else return NO_RESULT;
+    }
+}
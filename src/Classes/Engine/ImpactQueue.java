@@ -0,0 +1,124 @@
+package Classes.Engine;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of predicted impacts, ordered by the time at which they happen. It is used by
+ * Simulation.advanceShootingOrbs to process the collisions of a frame in order. The events are stored as parallel
+ * primitive arrays and the heap holds their indices, so the queue can be cleared and refilled every frame without
+ * creating garbage.
+ *
+ * Each event records the "version" of the shooting orb(s) involved at the time it was predicted. Whenever a shooting
+ * orb's path changes, its version is incremented, and any events that were predicted from its old path are stale.
+ * Stale events are simply skipped when they reach the front of the queue.
+ */
+public class ImpactQueue {
+    private int numEvents = 0;
+    private double[] time; // seconds since the start of the frame.
+    private int[] shooterSlot;
+    private int[] arrayI; // The same encoding as Collision.arrayI: array coordinates, or WALL, CEILING or SHOOTER.
+    private int[] arrayJ; // For SHOOTER impacts, the slot of the other shooting orb.
+    private int[] shooterVersion;
+    private int[] otherVersion; // For SHOOTER impacts only.
+
+    private int heapSize = 0;
+    private int[] heap; // Event indices. Ties in time go to the event that was added last.
+
+    public ImpactQueue(){
+        this(16);
+    }
+
+    public ImpactQueue(int initialCapacity){
+        int capacity = Math.max(initialCapacity, 1);
+        time = new double[capacity];
+        shooterSlot = new int[capacity];
+        arrayI = new int[capacity];
+        arrayJ = new int[capacity];
+        shooterVersion = new int[capacity];
+        otherVersion = new int[capacity];
+        heap = new int[capacity];
+    }
+
+    public void clear(){
+        numEvents = 0;
+        heapSize = 0;
+    }
+
+    public boolean isEmpty(){
+        return heapSize==0;
+    }
+
+    public void add(double eventTime, int slot, int i, int j, int version, int versionOfOther){
+        if(numEvents==time.length) grow(2*numEvents);
+        int event = numEvents++;
+        time[event] = eventTime;
+        shooterSlot[event] = slot;
+        arrayI[event] = i;
+        arrayJ[event] = j;
+        shooterVersion[event] = version;
+        otherVersion[event] = versionOfOther;
+
+        // Sift up:
+        int position = heapSize++;
+        while(position>0){
+            int parent = (position-1)/2;
+            if(!isBefore(event, heap[parent])) break;
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = event;
+    }
+
+    // Removes the soonest event and returns its index. Note: the queue is assumed to be non-empty.
+    public int poll(){
+        int first = heap[0];
+        int last = heap[--heapSize];
+
+        // Sift down:
+        int position = 0;
+        while(true){
+            int child = 2*position + 1;
+            if(child>=heapSize) break;
+            if(child+1<heapSize && isBefore(heap[child+1], heap[child])) child++;
+            if(!isBefore(heap[child], last)) break;
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = last;
+        return first;
+    }
+
+    private boolean isBefore(int event, int other){
+        return time[event] < time[other] || (time[event]==time[other] && event > other);
+    }
+
+    private void grow(int capacity){
+        time = Arrays.copyOf(time, capacity);
+        shooterSlot = Arrays.copyOf(shooterSlot, capacity);
+        arrayI = Arrays.copyOf(arrayI, capacity);
+        arrayJ = Arrays.copyOf(arrayJ, capacity);
+        shooterVersion = Arrays.copyOf(shooterVersion, capacity);
+        otherVersion = Arrays.copyOf(otherVersion, capacity);
+        heap = Arrays.copyOf(heap, capacity);
+    }
+
+    /* Getters. Note: the event index is assumed to have been returned by poll(). */
+    public double getTime(int event){
+        return time[event];
+    }
+    public int getShooterSlot(int event){
+        return shooterSlot[event];
+    }
+    public int getArrayI(int event){
+        return arrayI[event];
+    }
+    public int getArrayJ(int event){
+        return arrayJ[event];
+    }
+    public int getShooterVersion(int event){
+        return shooterVersion[event];
+    }
+    public int getOtherVersion(int event){
+        return otherVersion[event];
+    }
+}
@@ -0,0 +1,61 @@
+package Classes.Engine;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints. Unlike a List<Integer>, it can be cleared and refilled without creating any
+ * garbage once it has grown to its working size. Used for the buffers in Outcome.
+ */
+public class IntList {
+    private int[] data;
+    private int size = 0;
+
+    public IntList(){
+        this(16);
+    }
+
+    public IntList(int initialCapacity){
+        data = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(int value){
+        if(size==data.length) data = Arrays.copyOf(data, 2*data.length);
+        data[size++] = value;
+    }
+
+    // Note: the index is assumed to be less than size().
+    public int get(int index){
+        return data[index];
+    }
+
+    public void set(int index, int value){
+        data[index] = value;
+    }
+
+    // Removes the value at the given index, shifting the later values down to keep them in order.
+    public int removeAt(int index){
+        int value = data[index];
+        System.arraycopy(data, index+1, data, index, size-index-1);
+        size--;
+        return value;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size==0;
+    }
+
+    public void clear(){
+        size = 0;
+    }
+
+    public boolean contains(int value){
+        for(int k=0; k<size; k++){
+            if(data[k]==value) return true;
+        }
+        return false;
+    }
+}
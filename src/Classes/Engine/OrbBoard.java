@@ -0,0 +1,594 @@
+package Classes.Engine;
+
+import java.util.Arrays;
+
+import static Classes.Engine.Simulation.ARRAY_HEIGHT;
+import static Classes.Engine.Simulation.ORB_RADIUS;
+import static Classes.Engine.Simulation.ROW_HEIGHT;
+
+/**
+ * A compact representation of the orbs on a PlayPanel, used by the game logic instead of the Orb objects themselves.
+ * The board has ARRAY_HEIGHT+1 rows: rows 0 through ARRAY_HEIGHT-1 mirror the orbArray and row ARRAY_HEIGHT mirrors
+ * the deathOrbs. Each cell stores the ordinal of its OrbColor in a byte array, and occupied cells are also tracked in
+ * a bitset. The bitset is row-aligned (each row starts on a fresh long) so that whole rows can be tested at once.
+ * The Orb objects in the orbArray and deathOrbs remain responsible for everything that is drawn on the screen.
+ *
+ * The board also maintains an index of which orbs are connected to the ceiling. Adding an orb extends the index with
+ * a small flood fill from the new orb. Removing a connected orb might disconnect others, so it marks the index as
+ * stale, and the index is rebuilt the next time it is queried.
+ *
+ * For each OrbColor there is also a bit-plane (same layout as the occupancy bitset) with the cells of that color.
+ * Hex neighbors are 2 columns away on the same row and 1 column away on adjacent rows, so a same-color group can be
+ * grown with a few shifts and masks per row (see floodFill).
+ *
+ * Finally, the board keeps the "frontier": the empty orbArray cells where an orb could attach, because they touch the
+ * ceiling or an occupied cell. Each set or clear updates only the cell and its neighbors.
+ *
+ * The board also counts the orbs on each row, and remembers which rows have changed since the dirty rows were last
+ * cleared, so that the summaries in BoardStats don't require a scan.
+ *
+ * The board's contents (death row included) are summarized by a Zobrist hash: every (column, color) pair has a random
+ * key, a row's hash is the XOR of the keys of its orbs, and the board's hash combines the row hashes, each rotated by
+ * an amount that depends on the row. Adding or removing an orb updates the hash with a couple of XORs, and shiftDown()
+ * only has to recombine the row hashes. Two boards with the same orbs have the same hash, so the bots use it to
+ * recognize positions they have already analyzed, and it is also a cheap way to check that two copies of a board agree.
+ *
+ * Each row's colors are kept in a byte array of their own, and the row's occupancy, color planes and frontier are
+ * kept together in a long array of their own (see the offsets below). This lets boards share rows: snapshot() creates
+ * a copy that shares every row with the original, and whichever board changes a row first makes its own copy of that
+ * row (copy-on-write). Taking a snapshot costs one reference per row, and two boards that have diverged only hold
+ * separate copies of the rows that have changed. The bots take a snapshot every time they think, and copyFrom() can
+ * restore a board to an earlier snapshot.
+ * Note: snapshot() and copyFrom() modify the ownership flags of the board they copy, so they must be called by the
+ * thread that modifies that board. Snapshots can then be read (and modified) by other threads.
+ */
+public class OrbBoard implements BoardStats {
+    public static final int NUM_ROWS = ARRAY_HEIGHT+1; // The orbArray rows plus 1 row for the deathOrbs.
+    public static final byte EMPTY = -1;
+    public static final int NUM_COLORS = 6; // The number of OrbColors. Cells store colors by ordinal, so the engine never has to load the OrbColor enum (and its images).
+    // The offsets to the 6 neighbors of a cell:
+    public static final int[] NEIGHBOR_DI = {-1, -1, 0, 0, 1, 1};
+    public static final int[] NEIGHBOR_DJ = {-1, 1, -2, 2, -1, 1};
+
+    private final int width;
+    private final int wordsPerRow;
+    private final int frontierOffset; // The offset of the frontier words in a row of bits. The color planes come before it.
+    private final byte[][] colors; // OrbColor ordinals, indexed by [i][j]. Unoccupied cells hold EMPTY.
+    private final long[][] bits; // Indexed by [i][offset + j/64]. At offset 0 is the occupancy (bit j%64 is set if cell (i,j) is occupied), at colorOffset(c) is the plane of the OrbColor with ordinal c, and at frontierOffset is the frontier.
+    private long ownedRows; // Bit i is set if row i's arrays belong to this board alone. Otherwise, they must be copied before they are modified. Note: NUM_ROWS is less than 64.
+    private long[] connected; // Bit (j%64) of word (i*wordsPerRow + j/64) is set for the occupied cells that are connected to the ceiling.
+    private boolean connectedShared; // If true, the connected bitset is shared with another board, and must be copied before it is modified.
+    private final int[] arrayColorCounts; // The number of orbs of each OrbColor (by ordinal) in the orbArray rows. Death orbs are not counted.
+    private final int[] rowCounts; // The number of orbs on each row.
+    private int arrayOrbCount; // The number of orbs in the orbArray rows.
+    private long occupiedRows; // Bit i is set if row i has any orbs on it.
+    private long dirtyRows; // Bit i is set if row i has changed since clearDirtyRows() was last called.
+    private volatile boolean connectivityStale = false; // If true, the connected bitset must be rebuilt before it is used.
+    private long version = 0; // Incremented by every change to the board.
+    private final long[] rowHashes; // The XOR of the zobristKeys of the orbs on each row.
+    private long hash; // The XOR of the row hashes, each rotated by rowRotation(i).
+    private int[] searchStack; // Scratch space for the connectivity flood fill. Allocated when first needed.
+
+    public OrbBoard(int width){
+        this.width = width;
+        wordsPerRow = (width+63)/64;
+        frontierOffset = colorOffset(NUM_COLORS);
+        colors = new byte[NUM_ROWS][];
+        bits = new long[NUM_ROWS][];
+        for(int i=0; i<NUM_ROWS; i++){
+            colors[i] = newColorRow();
+            bits[i] = new long[frontierOffset + wordsPerRow];
+        }
+        ownedRows = (1L<<NUM_ROWS) - 1;
+        connected = new long[NUM_ROWS*wordsPerRow];
+        arrayColorCounts = new int[NUM_COLORS];
+        rowCounts = new int[NUM_ROWS];
+        rowHashes = new long[NUM_ROWS];
+        for(int j=0; j<width; j++) bits[0][frontierOffset + (j>>>6)] |= (1L<<j);
+    }
+
+    /* Copy Constructor. The copy shares all of its rows with the original (see snapshot). */
+    public OrbBoard(OrbBoard other){
+        width = other.width;
+        wordsPerRow = other.wordsPerRow;
+        frontierOffset = other.frontierOffset;
+        colors = new byte[NUM_ROWS][];
+        bits = new long[NUM_ROWS][];
+        arrayColorCounts = new int[NUM_COLORS];
+        rowCounts = new int[NUM_ROWS];
+        rowHashes = new long[NUM_ROWS];
+        copyFrom(other);
+    }
+
+    // Returns a copy of the board. The copy shares its rows with this board until one of them changes a row.
+    public OrbBoard snapshot(){
+        return new OrbBoard(this);
+    }
+
+    // Returns the number of changes that have been made to the board. A snapshot starts with the version of the board
+    // it was taken from.
+    public long getVersion(){
+        return version;
+    }
+
+    private byte[] newColorRow(){
+        byte[] row = new byte[width];
+        Arrays.fill(row, EMPTY);
+        return row;
+    }
+
+    private int colorOffset(int colorOrdinal){
+        return (1+colorOrdinal)*wordsPerRow;
+    }
+
+    // Makes sure that the arrays of row i belong to this board alone, so that they can be modified.
+    private void ownRow(int i){
+        if((ownedRows & (1L<<i)) != 0) return;
+        colors[i] = colors[i].clone();
+        bits[i] = bits[i].clone();
+        ownedRows |= (1L<<i);
+    }
+
+    private void ownConnected(){
+        if(!connectedShared) return;
+        connected = connected.clone();
+        connectedShared = false;
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public boolean isValid(int i, int j){
+        return (i>=0 && i<NUM_ROWS && j>=0 && j<width);
+    }
+
+    // Note: the coordinates are assumed to be valid.
+    public boolean isOccupied(int i, int j){
+        return (bits[i][j>>>6] & (1L<<j)) != 0;
+    }
+
+    // Returns the ordinal of the OrbColor at the given (valid) coordinates, or EMPTY if the cell is unoccupied.
+    public int getColorOrdinal(int i, int j){
+        return colors[i][j];
+    }
+
+    // Returns true if any of the neighbors of the given (valid) coordinates is occupied.
+    public boolean hasOccupiedNeighbor(int i, int j){
+        for(int k=0; k<NEIGHBOR_DI.length; k++){
+            int iTest = i + NEIGHBOR_DI[k];
+            int jTest = j + NEIGHBOR_DJ[k];
+            if(isValid(iTest,jTest) && isOccupied(iTest,jTest)) return true;
+        }
+        return false;
+    }
+
+    /* Cells can also be identified by a single int, which is what Outcome uses. */
+    public int cellOf(int i, int j){
+        return i*width + j;
+    }
+    public int rowOf(int cell){
+        return cell/width;
+    }
+    public int columnOf(int cell){
+        return cell%width;
+    }
+    public int getNumCells(){
+        return NUM_ROWS*width;
+    }
+
+    /* *********************************************** STATS *********************************************** */
+
+    public int getRowCount(int i){
+        return rowCounts[i];
+    }
+
+    public boolean isRowEmpty(int i){
+        return (occupiedRows & (1L<<i)) == 0;
+    }
+
+    public int getLowestOccupiedRow(){
+        return 63 - Long.numberOfLeadingZeros(occupiedRows); // -1 if no bits are set.
+    }
+
+    public int getArrayOrbCount(){
+        return arrayOrbCount;
+    }
+
+    public int getArrayColorCount(int colorOrdinal){
+        return arrayColorCounts[colorOrdinal];
+    }
+
+    public int getDeathOrbCount(){
+        return rowCounts[ARRAY_HEIGHT];
+    }
+
+    public long getDirtyRows(){
+        return dirtyRows;
+    }
+
+    public void clearDirtyRows(){
+        dirtyRows = 0;
+    }
+
+    /* *********************************************** HASHING *********************************************** */
+
+    // Returns the Zobrist hash of the board's contents. Boards with the same orbs (death orbs included) in the same
+    // places have the same hash.
+    public long getHash(){
+        return hash;
+    }
+
+    // The key for an orb of the given color (by ordinal) in column j. The keys are derived from the (column, color)
+    // pair with the SplitMix64 finalizer, so they are the same on every machine and for every board width.
+    private static long zobristKey(int j, int colorOrdinal){
+        long z = (j*NUM_COLORS + colorOrdinal + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z>>>30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z>>>27)) * 0x94D049BB133111EBL;
+        return z ^ (z>>>31);
+    }
+
+    private static int rowRotation(int i){
+        return 3*i; // Distinct for all NUM_ROWS rows.
+    }
+
+    // Toggles the key of an orb of the given color at (i,j) in the hashes.
+    private void toggleHash(int i, int j, int colorOrdinal){
+        long key = zobristKey(j, colorOrdinal);
+        rowHashes[i] ^= key;
+        hash ^= Long.rotateLeft(key, rowRotation(i));
+    }
+
+    /* *********************************************** CHANGES *********************************************** */
+
+    // Adds the given number of orbs to the count for row i (which has changed).
+    private void countOrbs(int i, int numOrbs){
+        rowCounts[i] += numOrbs;
+        if(i<ARRAY_HEIGHT) arrayOrbCount += numOrbs;
+        if(rowCounts[i]==0) occupiedRows &= ~(1L<<i);
+        else occupiedRows |= (1L<<i);
+        dirtyRows |= (1L<<i);
+    }
+
+    // Returns the parity (0 or 1) of the columns used by the given row, going by its first orb. An empty row gives 0.
+    public int getRowParity(int i){
+        for(int j=0; j<width; j++){
+            if(isOccupied(i,j)) return j%2;
+        }
+        return 0;
+    }
+
+    // Puts an orb of the given color (by ordinal) on the given cell.
+    public void set(int i, int j, int colorOrdinal){
+        ownRow(i);
+        long[] row = bits[i];
+        int oldColor = colors[i][j];
+        if(oldColor!=EMPTY){
+            row[colorOffset(oldColor) + (j>>>6)] &= ~(1L<<j);
+            toggleHash(i, j, oldColor);
+        }
+        toggleHash(i, j, colorOrdinal);
+        if(i<ARRAY_HEIGHT){
+            if(oldColor!=EMPTY) arrayColorCounts[oldColor]--;
+            arrayColorCounts[colorOrdinal]++;
+        }
+        colors[i][j] = (byte) colorOrdinal;
+        countOrbs(i, oldColor==EMPTY ? 1 : 0);
+        row[j>>>6] |= (1L<<j);
+        row[colorOffset(colorOrdinal) + (j>>>6)] |= (1L<<j);
+        setFrontierBit(i, j, false);
+        updateNeighborFrontier(i, j);
+        version++;
+
+        // The new orb is connected if it touches the ceiling or a connected orb. If so, it may also reconnect others:
+        if(!connectivityStale && !isConnectedBit(i,j) && (i==0 || hasConnectedNeighborBit(i,j))){
+            floodConnected(i,j);
+        }
+    }
+
+    public void clear(int i, int j){
+        ownRow(i);
+        long[] row = bits[i];
+        int oldColor = colors[i][j];
+        if(oldColor!=EMPTY){
+            row[colorOffset(oldColor) + (j>>>6)] &= ~(1L<<j);
+            toggleHash(i, j, oldColor);
+        }
+        if(oldColor!=EMPTY && i<ARRAY_HEIGHT) arrayColorCounts[oldColor]--;
+        colors[i][j] = EMPTY;
+        countOrbs(i, oldColor==EMPTY ? 0 : -1);
+        row[j>>>6] &= ~(1L<<j);
+        updateFrontier(i, j);
+        updateNeighborFrontier(i, j);
+        version++;
+
+        // Removing a connected orb might disconnect others. Rebuild the index when it is next needed:
+        if(isConnectedBit(i,j)){
+            ownConnected();
+            connected[i*wordsPerRow + (j>>>6)] &= ~(1L<<j);
+            connectivityStale = true;
+        }
+    }
+
+    // Makes this board a copy of the other board (which must have the same width). The two boards share their rows
+    // until one of them changes a row, so this can be used to restore a board to a snapshot cheaply.
+    public void copyFrom(OrbBoard other){
+        synchronized(other){ // The other board's connectivity might be being refreshed by a bot thread.
+            System.arraycopy(other.colors, 0, colors, 0, NUM_ROWS);
+            System.arraycopy(other.bits, 0, bits, 0, NUM_ROWS);
+            ownedRows = 0;
+            other.ownedRows = 0;
+            connected = other.connected;
+            connectedShared = true;
+            other.connectedShared = true;
+            System.arraycopy(other.arrayColorCounts, 0, arrayColorCounts, 0, arrayColorCounts.length);
+            System.arraycopy(other.rowCounts, 0, rowCounts, 0, NUM_ROWS);
+            arrayOrbCount = other.arrayOrbCount;
+            occupiedRows = other.occupiedRows;
+            dirtyRows = other.dirtyRows;
+            connectivityStale = other.connectivityStale;
+            version = other.version;
+            System.arraycopy(other.rowHashes, 0, rowHashes, 0, NUM_ROWS);
+            hash = other.hash;
+        }
+    }
+
+    // Moves every orb in the orbArray rows down one row, the way PlayPanel.addNewRow does. Orbs in the bottom orbArray
+    // row fall into the death row (replacing the death orbs in their columns), and row 0 is left empty.
+    public void shiftDown(){
+        int bottomRow = ARRAY_HEIGHT-1;
+        ownRow(ARRAY_HEIGHT);
+        byte[] bottomColors = colors[bottomRow];
+        long[] bottomBits = bits[bottomRow];
+        byte[] deathColors = colors[ARRAY_HEIGHT];
+        long[] deathBits = bits[ARRAY_HEIGHT];
+        long deathRowHash = rowHashes[ARRAY_HEIGHT];
+        for(int j=0; j<width; j++){
+            int color = bottomColors[j];
+            if(color==EMPTY) continue;
+            if(deathColors[j]!=EMPTY) deathRowHash ^= zobristKey(j, deathColors[j]);
+            deathRowHash ^= zobristKey(j, color);
+            deathColors[j] = (byte) color;
+            arrayColorCounts[color]--;
+        }
+        int numDeathOrbs = 0;
+        for(int w=0; w<wordsPerRow; w++){
+            long fallingOrbs = bottomBits[w];
+            deathBits[w] |= fallingOrbs;
+            numDeathOrbs += Long.bitCount(deathBits[w]);
+            for(int c=0; c<NUM_COLORS; c++){
+                int word = colorOffset(c) + w;
+                deathBits[word] = (deathBits[word] & ~fallingOrbs) | bottomBits[word];
+            }
+        }
+
+        // The rest of the rows are moved by reference, along with their ownership. The frontier moves with them. The
+        // bottom row's arrays are reused for the new row 0 if they belong to this board.
+        boolean bottomRowOwned = (ownedRows & (1L<<bottomRow)) != 0;
+        System.arraycopy(colors, 0, colors, 1, bottomRow);
+        System.arraycopy(bits, 0, bits, 1, bottomRow);
+        arrayOrbCount -= rowCounts[bottomRow];
+        System.arraycopy(rowCounts, 0, rowCounts, 1, bottomRow);
+        rowCounts[0] = 0;
+        rowCounts[ARRAY_HEIGHT] = numDeathOrbs;
+        System.arraycopy(rowHashes, 0, rowHashes, 1, bottomRow);
+        rowHashes[0] = 0;
+        rowHashes[ARRAY_HEIGHT] = deathRowHash;
+        hash = 0;
+        for(int i=0; i<NUM_ROWS; i++) hash ^= Long.rotateLeft(rowHashes[i], rowRotation(i));
+        long lowerRows = (1L<<ARRAY_HEIGHT) - 2; // rows 1 through bottomRow
+        occupiedRows = ((occupiedRows<<1) & lowerRows) | (numDeathOrbs>0 ? (1L<<ARRAY_HEIGHT) : 0);
+        dirtyRows = (1L<<NUM_ROWS) - 1; // Every row has moved.
+        ownedRows = ((ownedRows<<1) & ((1L<<ARRAY_HEIGHT) - 1)) | (1L<<ARRAY_HEIGHT) | 1L;
+        if(bottomRowOwned){
+            Arrays.fill(bottomColors, EMPTY);
+            Arrays.fill(bottomBits, 0);
+            colors[0] = bottomColors;
+            bits[0] = bottomBits;
+        }
+        else{
+            colors[0] = newColorRow();
+            bits[0] = new long[frontierOffset + wordsPerRow];
+        }
+
+        // Row 0 is now empty, so every cell on it is attachable and row 1 must be recomputed. So must the bottom row,
+        // since the death row might have had orbs of its own.
+        for(int j=0; j<width; j++){
+            setFrontierBit(0, j, true);
+            updateFrontier(1, j);
+            updateFrontier(bottomRow, j);
+        }
+        version++;
+
+        // Nothing touches the ceiling until the new row is added:
+        connectivityStale = true;
+    }
+
+    /* *********************************************** FRONTIER *********************************************** */
+
+    // Returns true if (i,j) is an empty orbArray cell on row 0 or next to an occupied cell.
+    public boolean isOnFrontier(int i, int j){
+        return (bits[i][frontierOffset + (j>>>6)] & (1L<<j)) != 0;
+    }
+
+    // Copies the frontier into dest, which has the layout of a plane (see newPlane).
+    public void copyFrontier(long[] dest){
+        copyRows(frontierOffset, dest);
+    }
+
+    private void updateFrontier(int i, int j){
+        setFrontierBit(i, j, i<ARRAY_HEIGHT && !isOccupied(i,j) && (i==0 || hasOccupiedNeighbor(i,j)));
+    }
+
+    // Only writes to the row if the bit changes, so that neighboring rows aren't copied needlessly.
+    private void setFrontierBit(int i, int j, boolean onFrontier){
+        if(isOnFrontier(i,j)==onFrontier) return;
+        ownRow(i);
+        bits[i][frontierOffset + (j>>>6)] ^= (1L<<j);
+    }
+
+    private void updateNeighborFrontier(int i, int j){
+        for(int k=0; k<NEIGHBOR_DI.length; k++){
+            int iTest = i + NEIGHBOR_DI[k];
+            int jTest = j + NEIGHBOR_DJ[k];
+            if(isValid(iTest,jTest)) updateFrontier(iTest, jTest);
+        }
+    }
+
+    /* *********************************************** BIT-PLANES *********************************************** */
+
+    // Creates an empty bitset with the same layout as the board's planes.
+    public long[] newPlane(){
+        return new long[NUM_ROWS*wordsPerRow];
+    }
+
+    public int getWordsPerRow(){
+        return wordsPerRow;
+    }
+
+    // Returns word w of row i of the occupancy bitset. Bit b is set if cell (i, 64*w + b) is occupied.
+    public long getOccupancyWord(int i, int w){
+        return bits[i][w];
+    }
+
+    // Copies the occupancy bitset into dest, which has the layout of a plane.
+    public void copyOccupancy(long[] dest){
+        copyRows(0, dest);
+    }
+
+    // Copies the cells of the given color into dest, which has the layout of a plane.
+    public void copyColorPlane(int colorOrdinal, long[] dest){
+        copyRows(colorOffset(colorOrdinal), dest);
+    }
+
+    // Copies the words at the given offset of each row into dest, which has the layout of a plane.
+    private void copyRows(int offset, long[] dest){
+        for(int i=0; i<NUM_ROWS; i++){
+            System.arraycopy(bits[i], offset, dest, i*wordsPerRow, wordsPerRow);
+        }
+    }
+
+    // Note: the coordinates are assumed to be valid.
+    public boolean testBit(long[] plane, int i, int j){
+        return (plane[i*wordsPerRow + (j>>>6)] & (1L<<j)) != 0;
+    }
+    public void setBit(long[] plane, int i, int j){
+        plane[i*wordsPerRow + (j>>>6)] |= (1L<<j);
+    }
+    public void clearBit(long[] plane, int i, int j){
+        plane[i*wordsPerRow + (j>>>6)] &= ~(1L<<j);
+    }
+
+    /**
+     * Grows the group to the entire region of the mask that it is connected to, and returns the number of cells in the
+     * group. Each pass sweeps the rows from top to bottom, adding every cell of the mask that neighbors the group, and
+     * the passes are repeated until the group stops growing.
+     * @param mask The cells that may be part of the group.
+     * @param group The starting cells, which must be a subset of the mask. Overwritten with the result.
+     */
+    public int floodFill(long[] mask, long[] group){
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(int i=0; i<NUM_ROWS; i++){
+                int row = i*wordsPerRow;
+                for(int w=0; w<wordsPerRow; w++){
+                    if(mask[row+w]==0) continue;
+                    long grown = group[row+w] | spread(group, row, w, 2);
+                    if(i>0) grown |= spread(group, row-wordsPerRow, w, 1);
+                    if(i<NUM_ROWS-1) grown |= spread(group, row+wordsPerRow, w, 1);
+                    grown &= mask[row+w];
+                    if(grown!=group[row+w]){
+                        group[row+w] = grown;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        int size = 0;
+        for(long word : group) size += Long.bitCount(word);
+        return size;
+    }
+
+    // Returns word w of the given row, shifted by the given number of columns in both directions. Bits that cross a
+    // word boundary are carried over from the adjacent words.
+    private long spread(long[] plane, int row, int w, int columns){
+        long word = plane[row+w];
+        long result = (word<<columns) | (word>>>columns);
+        if(w>0) result |= plane[row+w-1]>>>(64-columns);
+        if(w<wordsPerRow-1) result |= plane[row+w+1]<<(64-columns);
+        return result;
+    }
+
+    /* *********************************************** CONNECTIVITY *********************************************** */
+
+    // Returns true if the orb at the given (valid) coordinates is connected to the ceiling.
+    public boolean isConnected(int i, int j){
+        if(connectivityStale) refreshConnectivity();
+        return isConnectedBit(i,j);
+    }
+
+    // Returns true if any of the neighbors of the given (valid) coordinates is connected to the ceiling.
+    public boolean hasConnectedNeighbor(int i, int j){
+        if(connectivityStale) refreshConnectivity();
+        return hasConnectedNeighborBit(i,j);
+    }
+
+    private boolean isConnectedBit(int i, int j){
+        return (connected[i*wordsPerRow + (j>>>6)] & (1L<<j)) != 0;
+    }
+
+    private boolean hasConnectedNeighborBit(int i, int j){
+        for(int k=0; k<NEIGHBOR_DI.length; k++){
+            int iTest = i + NEIGHBOR_DI[k];
+            int jTest = j + NEIGHBOR_DJ[k];
+            if(isValid(iTest,jTest) && isConnectedBit(iTest,jTest)) return true;
+        }
+        return false;
+    }
+
+    // Rebuilds the connectivity index from scratch. Synchronized because the bot threads may share a board.
+    private synchronized void refreshConnectivity(){
+        if(!connectivityStale) return;
+        if(connectedShared){
+            connected = new long[NUM_ROWS*wordsPerRow];
+            connectedShared = false;
+        }
+        else Arrays.fill(connected, 0);
+        for(int j=0; j<width; j++){
+            if(isOccupied(0,j) && !isConnectedBit(0,j)) floodConnected(0,j);
+        }
+        connectivityStale = false;
+    }
+
+    // Marks the given occupied cell, and every unmarked occupied cell that can be reached from it, as connected.
+    private void floodConnected(int i, int j){
+        if(searchStack==null) searchStack = new int[NUM_ROWS*width];
+        ownConnected();
+        int stackSize = 0;
+        connected[i*wordsPerRow + (j>>>6)] |= (1L<<j);
+        searchStack[stackSize++] = i*width + j;
+        while(stackSize>0){
+            int cell = searchStack[--stackSize];
+            int iCell = cell/width;
+            int jCell = cell%width;
+            for(int k=0; k<NEIGHBOR_DI.length; k++){
+                int iTest = iCell + NEIGHBOR_DI[k];
+                int jTest = jCell + NEIGHBOR_DJ[k];
+                if(isValid(iTest,jTest) && isOccupied(iTest,jTest) && !isConnectedBit(iTest,jTest)){
+                    connected[iTest*wordsPerRow + (jTest>>>6)] |= (1L<<jTest);
+                    searchStack[stackSize++] = iTest*width + jTest;
+                }
+            }
+        }
+    }
+
+    /* The on-screen position of a cell's center. These agree with the positions set by Orb.setIJ(). */
+    public static double getXPos(int j){
+        return ORB_RADIUS + ORB_RADIUS*j;
+    }
+    public static double getYPos(int i){
+        return ORB_RADIUS + i*ROW_HEIGHT;
+    }
+}
@@ -0,0 +1,193 @@
+package Classes.Engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static Classes.Engine.Simulation.ARRAY_HEIGHT;
+
+/**
+ * The results of Simulation.simulateOrbs. Each thread keeps one Outcome per Simulation and reuses it for every call,
+ * so the simulation creates no garbage once the buffers have grown to their working size. Array and death orbs are
+ * identified by their board cell (see OrbBoard.cellOf), and shooting orbs by their slot in the shootingOrbs buffer.
+ * The Outcome only describes what happens; it is up to the caller to apply it (see Simulation.applyOutcome).
+ */
+public class Outcome{
+    public ShootingOrbBuffer shootingOrbs = new ShootingOrbBuffer(); // Positions are AFTER snapping. Angles and speeds are AFTER all collisions.
+    public List<Collision> collisions = new ArrayList<>(); // The first numCollisions entries are this frame's collisions with array orbs and with the ceiling. The rest are spares.
+    public int numCollisions;
+    public IntList shootingOrbsToSnap = new IntList(); // The orb in slot shootingOrbsToSnap[k] will snap to the array coordinates (snapI[k], snapJ[k]).
+    public IntList snapI = new IntList();
+    public IntList snapJ = new IntList();
+    public IntList shootingOrbsToBurst = new IntList();
+    public IntList arrayOrbsToBurst = new IntList();
+    public IntList deathOrbsToBurst = new IntList();
+    public IntList arrayOrbsToDrop = new IntList();
+    public IntList deathOrbsToDrop = new IntList();
+    public IntList shootingOrbsToDrop = new IntList();
+    public IntList burstOrbsToTransfer = new IntList();
+    public IntList shootingOrbsToTransfer = new IntList(); // Burst shooting orbs that will also be transferred.
+    public Set<Event> events = EnumSet.noneOf(Event.class);
+
+    // Things that happened during the frame that the player should hear about. PlayPanel turns them into SoundEffects.
+    public enum Event {WALL_BOUNCE, SHOOTER_BOUNCE, PLACEMENT, GROUP_TRANSFER}
+
+    // Scratch space:
+    Collision soonestCollision = new Collision();
+    ShootingOrbBuffer shot = new ShootingOrbBuffer(1); // The single shooting orb for Simulation.simulateShot and traceTrajectory.
+    ImpactQueue impacts = new ImpactQueue();
+    double[] orbTimes = new double[4]; // indexed by slot. The time up to which each shooting orb has been advanced.
+    int[] orbVersions = new int[4]; // indexed by slot. Incremented whenever a shooting orb's path changes (see ImpactQueue).
+    IntList burstingShootingOrbs = new IntList();
+    // Lanes for the batched collision test (see Simulation.collideRow), indexed by candidate. Sized to the board width.
+    int[] laneColumns;
+    double[] laneX; // relative to the shooting orb.
+    double[] laneDiscriminants;
+    double[] laneTimes;
+    private boolean[] shootingOrbBursting = new boolean[4]; // indexed by slot.
+    private boolean[] shootingOrbDropping = new boolean[4]; // indexed by slot.
+    long[] mask; // bit-planes with the layout of the board.
+    long[] group;
+    long[] connected; // All Orbs that are connected to the ceiling at the end of the frame. Used for finding floating orbs. Only computed if array orbs burst.
+
+    // Per-cell state, indexed by board cell. Only the cells named in the lists above are ever set, so reset() clears
+    // just those instead of the whole grid:
+    private static final byte BURSTING = 1;
+    private static final byte DROPPING = 2;
+    private int[] snapSlots; // The slot of the shooting orb that will snap to the cell, or -1.
+    private byte[] cellStates; // BURSTING and/or DROPPING, for array and death orbs.
+
+    public void reset(OrbBoard board, ShootingOrbBuffer shootingOrbBuffer){
+        shootingOrbs.copyFrom(shootingOrbBuffer);
+        reset(board);
+    }
+
+    private void reset(OrbBoard board){
+        if(shootingOrbBursting.length < shootingOrbs.size()){
+            shootingOrbBursting = new boolean[2*shootingOrbs.size()];
+            shootingOrbDropping = new boolean[2*shootingOrbs.size()];
+            orbTimes = new double[2*shootingOrbs.size()];
+            orbVersions = new int[2*shootingOrbs.size()];
+        }
+        Arrays.fill(shootingOrbBursting, 0, shootingOrbs.size(), false);
+        Arrays.fill(shootingOrbDropping, 0, shootingOrbs.size(), false);
+        if(snapSlots==null){
+            snapSlots = new int[board.getNumCells()];
+            Arrays.fill(snapSlots, -1);
+            cellStates = new byte[board.getNumCells()];
+        }
+        else{
+            for(int k=0; k<shootingOrbsToSnap.size(); k++){
+                if(board.isValid(snapI.get(k), snapJ.get(k))) snapSlots[board.cellOf(snapI.get(k), snapJ.get(k))] = -1;
+            }
+            clearCellStates(arrayOrbsToBurst);
+            clearCellStates(deathOrbsToBurst);
+            clearCellStates(arrayOrbsToDrop);
+            clearCellStates(deathOrbsToDrop);
+        }
+        numCollisions = 0;
+        shootingOrbsToSnap.clear();
+        snapI.clear();
+        snapJ.clear();
+        shootingOrbsToBurst.clear();
+        arrayOrbsToBurst.clear();
+        deathOrbsToBurst.clear();
+        arrayOrbsToDrop.clear();
+        deathOrbsToDrop.clear();
+        shootingOrbsToDrop.clear();
+        burstOrbsToTransfer.clear();
+        shootingOrbsToTransfer.clear();
+        events.clear();
+        if(laneColumns==null || laneColumns.length<board.getWidth()){
+            laneColumns = new int[board.getWidth()];
+            laneX = new double[board.getWidth()];
+            laneDiscriminants = new double[board.getWidth()];
+            laneTimes = new double[board.getWidth()];
+        }
+        if(mask==null){
+            mask = board.newPlane();
+            group = board.newPlane();
+            connected = board.newPlane();
+        }
+    }
+
+    private void clearCellStates(IntList cells){
+        for(int k=0; k<cells.size(); k++) cellStates[cells.get(k)] = 0;
+    }
+
+    void addCollision(Collision collision){
+        if(numCollisions==collisions.size()) collisions.add(new Collision());
+        collisions.get(numCollisions++).set(collision);
+    }
+
+    // Adds the shooting orb in the given slot to shootingOrbsToBurst, unless it is already there.
+    public void burstShootingOrb(int slot){
+        if(shootingOrbBursting[slot]) return;
+        shootingOrbBursting[slot] = true;
+        shootingOrbsToBurst.add(slot);
+    }
+
+    // Adds the shooting orb in the given slot to shootingOrbsToDrop, unless it is already there.
+    public void dropShootingOrb(int slot){
+        if(shootingOrbDropping[slot]) return;
+        shootingOrbDropping[slot] = true;
+        shootingOrbsToDrop.add(slot);
+    }
+
+    // Records that the shooting orb in the given slot will snap to (i,j).
+    void addSnap(OrbBoard board, int slot, int i, int j){
+        shootingOrbsToSnap.add(slot);
+        snapI.add(i);
+        snapJ.add(j);
+        if(board.isValid(i, j)) snapSlots[board.cellOf(i,j)] = slot;
+    }
+
+    // Adds the array (or death) orb in the given cell to arrayOrbsToBurst (or deathOrbsToBurst).
+    void burstCell(OrbBoard board, int cell){
+        if(board.rowOf(cell)<ARRAY_HEIGHT) arrayOrbsToBurst.add(cell);
+        else deathOrbsToBurst.add(cell);
+        cellStates[cell] |= BURSTING;
+    }
+
+    // Adds the array (or death) orb in the given cell to arrayOrbsToDrop.
+    void dropCell(int cell){
+        arrayOrbsToDrop.add(cell);
+        cellStates[cell] |= DROPPING;
+    }
+
+    public boolean isCellBursting(int cell){
+        return (cellStates[cell] & BURSTING) != 0;
+    }
+
+    public boolean isCellDropping(int cell){
+        return (cellStates[cell] & DROPPING) != 0;
+    }
+
+    // Returns the slot of the shooting orb that will snap to the given cell, or -1 if there is none.
+    public int getSnapSlot(int cell){
+        return snapSlots[cell];
+    }
+
+    public boolean isShootingOrbBursting(int slot){
+        return shootingOrbBursting[slot];
+    }
+
+    public boolean isShootingOrbDropping(int slot){
+        return shootingOrbDropping[slot];
+    }
+
+    // Returns the number of burst orbs that will be transferred to other teams.
+    public int getNumOrbsToTransfer(){
+        return burstOrbsToTransfer.size() + shootingOrbsToTransfer.size();
+    }
+
+    // Returns the index of the given slot in shootingOrbsToSnap, or -1 if that shooting orb isn't snapping.
+    public int findSnapIndex(int slot){
+        for(int k=0; k<shootingOrbsToSnap.size(); k++){
+            if(shootingOrbsToSnap.get(k)==slot) return k;
+        }
+        return -1;
+    }
+}
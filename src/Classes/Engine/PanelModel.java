@@ -0,0 +1,384 @@
+package Classes.Engine;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import static Classes.Engine.Simulation.*;
+
+/**
+ * The rules of one team's PlayPanel: shots, bursts and drops (via the Simulation), dropping orbs, orbs transferred in
+ * from the other teams, new rows, and the death line. Like the Simulation, it has no dependencies on JavaFX, so a game
+ * can be played without a display (see BotTournament). Colors are stored as OrbColor ordinals.
+ *
+ * A frame is ticked in two halves, tickOrbs() and tickRows(), so that PlayPanel can load the next puzzle in between,
+ * the same way it always has. Each half records what happened during the frame (see the getters at the bottom), and
+ * PlayPanel mirrors those events on the Orbs it draws: the orbs it keeps in its lists are in the same order as the
+ * ones kept here.
+ */
+public class PanelModel {
+    public enum TeamState {DEFEATED, VICTORIOUS, NORMAL}
+
+    private final int team;
+    private final Simulation simulation;
+    private final OrbBoard board;
+    private final boolean randomPuzzle; // If true, clearing the board wins the game. Otherwise, the next puzzle is loaded by the PlayPanel.
+    private TeamState state = TeamState.NORMAL;
+    private boolean eliminated = false; // true if this team is out of the game (see GameModel.checkForVictory).
+    private int shotsUntilNewRow;
+
+    // For generating the puzzle rows and determining where transfer orbs appear:
+    private final Random randomPuzzleGenerator;
+    private final Random randomTransferOrbGenerator;
+
+    private ShootingOrbBuffer shootingOrbs = new ShootingOrbBuffer();
+    private ShootingOrbBuffer remainingShootingOrbs = new ShootingOrbBuffer(); // Swapped with shootingOrbs every frame.
+    private final List<DroppingOrb> droppingOrbs = new LinkedList<>();
+    private final List<TransferOrb> transferInOrbs = new LinkedList<>();
+    private final IntList transferOutColors = new IntList(); // orbs to be transferred to other teams (see GameModel.transferOrbs).
+
+    // Scratch space for receiveTransferOrbs():
+    private final IntList claimedSpots = new IntList(); // Holds OrbBoard cells.
+    private final IntList openSpots = new IntList(); // Holds OrbBoard cells.
+    private final long[] transferSpots;
+
+    // The events of the last frame:
+    private Outcome outcome; // Belongs to the thread that called tickOrbs() (see Simulation.simulateOrbs).
+    private final IntList survivingShootingOrbs = new IntList(); // The slot of each shooting orb that is still in flight, in order.
+    private final IntList thunderingOrbs = new IntList(); // Indices in droppingOrbs (before they were removed) of the orbs that fell off the bottom.
+    private final IntList finishedTransferOrbs = new IntList(); // Indices in transferInOrbs (before they were removed) of the orbs that are done transferring.
+    private final IntList materializedTransferOrbs = new IntList(); // The subset of finishedTransferOrbs that were placed on the board.
+    private int numShotsSnapped;
+    private boolean puzzleCleared;
+    private boolean newRow;
+    private boolean defeated;
+
+    public PanelModel(int team, int numPlayers, boolean randomPuzzle, int seed, boolean deterministicPhysics, boolean shooterCollisions, boolean batchedCollisionTests){
+        this.team = team;
+        this.randomPuzzle = randomPuzzle;
+        simulation = new Simulation(numPlayers, deterministicPhysics, shooterCollisions, batchedCollisionTests);
+        board = new OrbBoard(simulation.getArrayWidth());
+        transferSpots = board.newPlane();
+        randomPuzzleGenerator = new Random(seed);
+        randomTransferOrbGenerator = new Random(seed);
+        shotsUntilNewRow = SHOTS_BETWEEN_DROPS*numPlayers;
+    }
+
+    // Fills the board with a random puzzle of the given number of rows, and empties the rest of the orbArray rows.
+    public void fillRandomPuzzle(int rows){
+        if(rows>ARRAY_HEIGHT-1) rows = ARRAY_HEIGHT-1; // Max rows in random puzzle
+        for(int i=0; i<ARRAY_HEIGHT; i++){
+            for(int j=0; j<board.getWidth(); j++){
+                if(i<rows && j%2==i%2) board.set(i, j, randomPuzzleGenerator.nextInt(OrbBoard.NUM_COLORS));
+                else board.clear(i, j);
+            }
+        }
+    }
+
+    // Adds a shooting orb, which will start moving on the next frame.
+    public void addShootingOrb(double xPos, double yPos, double angle, double speed, int colorOrdinal){
+        shootingOrbs.add(xPos, yPos, angle, speed, colorOrdinal, shootingOrbs.size());
+    }
+
+    public void clearShootingOrbs(){
+        shootingOrbs.clear();
+    }
+
+    // The first half of a frame: shooting orbs are simulated and the Outcome is applied to the board, then the dropping
+    // orbs and transfer-in orbs are advanced. The puzzle is checked at the end.
+    public void tickOrbs(){
+        board.clearDirtyRows();
+        outcome = simulation.simulateOrbs(board, shootingOrbs, 1/(double) DATA_FRAME_RATE);
+        numShotsSnapped = outcome.shootingOrbsToSnap.size();
+
+        // The outcome names array and death orbs by their cells. Look up their colors before the board is modified:
+        for(int k=0; k<outcome.burstOrbsToTransfer.size(); k++){
+            int cell = outcome.burstOrbsToTransfer.get(k);
+            transferOutColors.add(board.getColorOrdinal(board.rowOf(cell), board.columnOf(cell)));
+        }
+        for(int k=0; k<outcome.shootingOrbsToTransfer.size(); k++){
+            transferOutColors.add(outcome.shootingOrbs.getColorOrdinal(outcome.shootingOrbsToTransfer.get(k)));
+        }
+        for(int k=0; k<outcome.shootingOrbsToDrop.size(); k++){
+            int slot = outcome.shootingOrbsToDrop.get(k);
+            droppingOrbs.add(new DroppingOrb(outcome.shootingOrbs.getColorOrdinal(slot), outcome.shootingOrbs.getY(slot), outcome.shootingOrbs.getSpeed(slot)));
+        }
+        for(int k=0; k<outcome.arrayOrbsToDrop.size(); k++){
+            int cell = outcome.arrayOrbsToDrop.get(k);
+            int i = board.rowOf(cell);
+            droppingOrbs.add(new DroppingOrb(board.getColorOrdinal(i, board.columnOf(cell)), OrbBoard.getYPos(i), 0.0));
+        }
+        simulation.applyOutcome(board, outcome);
+
+        // Keep the shooting orbs that haven't snapped, burst or dropped. Orbs that have somehow wandered off the edges of
+        // the PlayPanel are removed too. This should never happen, but... you never know.
+        remainingShootingOrbs.clear();
+        survivingShootingOrbs.clear();
+        ShootingOrbBuffer newShootingOrbs = outcome.shootingOrbs;
+        double rightEdge = PLAYPANEL_WIDTH_PER_PLAYER*simulation.getNumPlayers() + 2*ORB_RADIUS;
+        for(int slot=0; slot<newShootingOrbs.size(); slot++){
+            if(outcome.isShootingOrbBursting(slot) || outcome.isShootingOrbDropping(slot) || outcome.findSnapIndex(slot)!=-1) continue;
+            double x = newShootingOrbs.getX(slot);
+            double y = newShootingOrbs.getY(slot);
+            if(x<-ORB_RADIUS || x>rightEdge || y<-ORB_RADIUS || y>PLAYPANEL_HEIGHT) continue;
+            remainingShootingOrbs.add(x, y, newShootingOrbs.getAngle(slot), newShootingOrbs.getSpeed(slot), newShootingOrbs.getColorOrdinal(slot), remainingShootingOrbs.size());
+            survivingShootingOrbs.add(slot);
+        }
+        ShootingOrbBuffer temp = shootingOrbs;
+        shootingOrbs = remainingShootingOrbs;
+        remainingShootingOrbs = temp;
+
+        // Advance the dropping orbs. Those that fall off the bottom of the PlayPanel are transferred:
+        thunderingOrbs.clear();
+        int index = 0;
+        Iterator<DroppingOrb> droppingIterator = droppingOrbs.iterator();
+        while(droppingIterator.hasNext()){
+            DroppingOrb orb = droppingIterator.next();
+            orb.speed += GRAVITY/DATA_FRAME_RATE;
+            orb.yPos += orb.speed/DATA_FRAME_RATE;
+            if(orb.yPos > PLAYPANEL_HEIGHT){
+                transferOutColors.add(orb.colorOrdinal);
+                thunderingOrbs.add(index);
+                droppingIterator.remove();
+            }
+            index++;
+        }
+
+        advanceTransferInOrbs();
+
+        // If there are no orbs connected to the ceiling, then this team has finished the puzzle:
+        puzzleCleared = Simulation.isPuzzleCleared(board);
+        if(puzzleCleared){
+            shootingOrbs.clear();
+            survivingShootingOrbs.clear();
+            if(randomPuzzle) state = TeamState.VICTORIOUS;
+        }
+    }
+
+    // Of the transfer-in orbs that are done, only those that would be connected to the ceiling materialize. This is
+    // decided before any of them are placed, so that one transfer orb can't connect another.
+    private void advanceTransferInOrbs(){
+        finishedTransferOrbs.clear();
+        materializedTransferOrbs.clear();
+        int index = 0;
+        for(TransferOrb orb : transferInOrbs){
+            orb.currentFrame++;
+            if(orb.currentFrame > TIME_TO_TRANSFER*DATA_FRAME_RATE) finishedTransferOrbs.add(index);
+            index++;
+        }
+        if(finishedTransferOrbs.isEmpty()) return;
+
+        List<TransferOrb> connectedTransferOrbs = new LinkedList<>();
+        IntList connectedIndices = new IntList();
+        int k = 0;
+        index = 0;
+        for(TransferOrb orb : transferInOrbs){
+            if(k<finishedTransferOrbs.size() && finishedTransferOrbs.get(k)==index){
+                if(orb.i==0 || board.hasConnectedNeighbor(orb.i, orb.j)){
+                    connectedTransferOrbs.add(orb);
+                    connectedIndices.add(index);
+                }
+                k++;
+            }
+            index++;
+        }
+        k = 0;
+        for(TransferOrb orb : connectedTransferOrbs){
+            if(!board.isOccupied(orb.i, orb.j)){
+                board.set(orb.i, orb.j, orb.colorOrdinal);
+                materializedTransferOrbs.add(connectedIndices.get(k));
+            }
+            k++;
+        }
+
+        // remove the finished orbs from the inbound transfer orbs list:
+        k = 0;
+        index = 0;
+        Iterator<TransferOrb> iterator = transferInOrbs.iterator();
+        while(iterator.hasNext()){
+            iterator.next();
+            if(k<finishedTransferOrbs.size() && finishedTransferOrbs.get(k)==index){
+                iterator.remove();
+                k++;
+            }
+            index++;
+        }
+    }
+
+    // The second half of a frame: once the team has fired a sufficient number of times, a new row of orbs is added.
+    // Then the death line is checked.
+    public void tickRows(){
+        newRow = false;
+        if(shotsUntilNewRow<=0) shotsUntilNewRow = SHOTS_BETWEEN_DROPS*simulation.getNumPlayers() + shotsUntilNewRow;
+        shotsUntilNewRow -= numShotsSnapped;
+        if(shotsUntilNewRow<=0) addNewRow();
+
+        // check to see whether this team has lost due to uncleared deathOrbs:
+        defeated = Simulation.isDefeated(board);
+        if(defeated){
+            state = TeamState.DEFEATED;
+            eliminated = true;
+        }
+    }
+
+    // A whole frame, for a team that plays a random puzzle. PlayPanel calls the two halves itself.
+    public void tick(){
+        tickOrbs();
+        tickRows();
+    }
+
+    // Moves the board down a row. Orbs in the bottom row fall into the death row. The new top row is filled at random.
+    private void addNewRow(){
+        // Determine whether the new row will have "odd" or "even" placement:
+        int newRowOffset = Simulation.getNewRowParity(board);
+
+        board.shiftDown();
+        for(TransferOrb transferOrb : transferInOrbs) transferOrb.i++;
+        for(int j=0; j<board.getWidth(); j++){
+            if(j%2==newRowOffset) board.set(0, j, randomPuzzleGenerator.nextInt(OrbBoard.NUM_COLORS));
+        }
+        newRow = true;
+    }
+
+    // Places incoming orbs (by color) on open, connected spots that no other transfer orb is already headed to.
+    public void receiveTransferOrbs(IntList colors){
+        claimedSpots.clear();
+        for(TransferOrb orb : transferInOrbs){
+            if(board.isValid(orb.i, orb.j)) claimedSpots.add(board.cellOf(orb.i, orb.j));
+        }
+        Simulation.findTransferSpots(board, claimedSpots, transferSpots, openSpots);
+
+        // Now pick one spot for each orb:
+        //todo: if the orbArray is full, put transfer orbs in the deathOrbs list
+        //todo: if there are otherwise not enough open, connected spots, then place transferOrbs in secondary and tertiary locations.
+        for(int k=0; k<colors.size(); k++){
+            if(openSpots.isEmpty()) break; //todo: temporary fix to avoid calling nextInt(0). In the future, place transferOrbs in secondary and tertiary locations.
+            int openSpot = openSpots.removeAt(randomTransferOrbGenerator.nextInt(openSpots.size()));
+            transferInOrbs.add(new TransferOrb(colors.get(k), board.rowOf(openSpot), board.columnOf(openSpot), 0));
+        }
+    }
+
+    // For keeping the transfer-in orbs consistent with the host's.
+    public void addTransferInOrb(int colorOrdinal, int i, int j, int currentFrame){
+        transferInOrbs.add(new TransferOrb(colorOrdinal, i, j, currentFrame));
+    }
+    public void removeTransferInOrb(int index){
+        transferInOrbs.remove(index);
+    }
+
+    /* Getters and setters */
+    public int getTeam(){
+        return team;
+    }
+    public Simulation getSimulation(){
+        return simulation;
+    }
+    public OrbBoard getBoard(){
+        return board;
+    }
+    public ShootingOrbBuffer getShootingOrbs(){
+        return shootingOrbs;
+    }
+    public List<DroppingOrb> getDroppingOrbs(){
+        return droppingOrbs;
+    }
+    public List<TransferOrb> getTransferInOrbs(){
+        return transferInOrbs;
+    }
+    public IntList getTransferOutColors(){
+        return transferOutColors;
+    }
+    public int getShotsUntilNewRow(){
+        return shotsUntilNewRow;
+    }
+    public void setShotsUntilNewRow(int shotsUntilNewRow){
+        this.shotsUntilNewRow = shotsUntilNewRow;
+    }
+    public TeamState getState(){
+        return state;
+    }
+    public void setState(TeamState state){
+        this.state = state;
+    }
+    public boolean isEliminated(){
+        return eliminated;
+    }
+    public void setEliminated(boolean eliminated){
+        this.eliminated = eliminated;
+    }
+
+    /* The events of the last frame */
+    public Outcome getOutcome(){
+        return outcome;
+    }
+    public IntList getSurvivingShootingOrbs(){
+        return survivingShootingOrbs;
+    }
+    public IntList getThunderingOrbs(){
+        return thunderingOrbs;
+    }
+    public IntList getFinishedTransferOrbs(){
+        return finishedTransferOrbs;
+    }
+    public IntList getMaterializedTransferOrbs(){
+        return materializedTransferOrbs;
+    }
+    public boolean isPuzzleCleared(){
+        return puzzleCleared;
+    }
+    public boolean isNewRow(){
+        return newRow;
+    }
+    public boolean isDefeated(){
+        return defeated;
+    }
+
+    // An orb falling off the PlayPanel after it was disconnected from the ceiling.
+    public static class DroppingOrb {
+        private final int colorOrdinal;
+        private double yPos;
+        private double speed; // pixels per second, downwards.
+
+        DroppingOrb(int colorOrdinal, double yPos, double speed){
+            this.colorOrdinal = colorOrdinal;
+            this.yPos = yPos;
+            this.speed = speed;
+        }
+
+        public int getColorOrdinal(){
+            return colorOrdinal;
+        }
+        public double getYPos(){
+            return yPos;
+        }
+        public double getSpeed(){
+            return speed;
+        }
+    }
+
+    // An orb sent by another team, which materializes at (i,j) once its time is up.
+    public static class TransferOrb {
+        private final int colorOrdinal;
+        private int i;
+        private final int j;
+        private int currentFrame;
+
+        TransferOrb(int colorOrdinal, int i, int j, int currentFrame){
+            this.colorOrdinal = colorOrdinal;
+            this.i = i;
+            this.j = j;
+            this.currentFrame = currentFrame;
+        }
+
+        public int getColorOrdinal(){
+            return colorOrdinal;
+        }
+        public int getI(){
+            return i;
+        }
+        public int getJ(){
+            return j;
+        }
+    }
+}
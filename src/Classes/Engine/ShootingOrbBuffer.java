@@ -0,0 +1,126 @@
+package Classes.Engine;
+
+import java.util.Arrays;
+
+/**
+ * The state of a group of shooting orbs, stored as parallel primitive arrays (one entry per "slot"). This is what the
+ * simulation works with instead of the Orb objects, so that every access is O(1) no matter how many orbs are in
+ * flight. A slot stays the same for the whole simulation of a frame, so Collisions and the snap lists in Outcome
+ * refer to shooting orbs by slot.
+ */
+public class ShootingOrbBuffer {
+    private int size = 0;
+    private double[] x;
+    private double[] y;
+    private double[] angle; // radians
+    private double[] speed; // pixels per second
+    private byte[] color; // OrbColor ordinals
+    private int[] id; // Identifies the orb to whoever filled the buffer. PlayPanel uses the orb's index in its shootingOrbs list.
+
+    public ShootingOrbBuffer(){
+        this(4);
+    }
+
+    public ShootingOrbBuffer(int initialCapacity){
+        int capacity = Math.max(initialCapacity, 1);
+        x = new double[capacity];
+        y = new double[capacity];
+        angle = new double[capacity];
+        speed = new double[capacity];
+        color = new byte[capacity];
+        id = new int[capacity];
+    }
+
+    // Adds a shooting orb and returns its slot.
+    public int add(double xPos, double yPos, double angle, double speed, int colorOrdinal, int id){
+        if(size==x.length) grow(2*size);
+        x[size] = xPos;
+        y[size] = yPos;
+        this.angle[size] = angle;
+        this.speed[size] = speed;
+        color[size] = (byte) colorOrdinal;
+        this.id[size] = id;
+        return size++;
+    }
+
+    public void copyFrom(ShootingOrbBuffer other){
+        if(x.length < other.size) grow(other.size);
+        System.arraycopy(other.x, 0, x, 0, other.size);
+        System.arraycopy(other.y, 0, y, 0, other.size);
+        System.arraycopy(other.angle, 0, angle, 0, other.size);
+        System.arraycopy(other.speed, 0, speed, 0, other.size);
+        System.arraycopy(other.color, 0, color, 0, other.size);
+        System.arraycopy(other.id, 0, id, 0, other.size);
+        size = other.size;
+    }
+
+    private void grow(int capacity){
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        angle = Arrays.copyOf(angle, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        color = Arrays.copyOf(color, capacity);
+        id = Arrays.copyOf(id, capacity);
+    }
+
+    public void clear(){
+        size = 0;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    // Moves the orb in the given slot the given distance along its current angle.
+    public void advance(int slot, double distance){
+        x[slot] += distance * Math.cos(angle[slot]);
+        y[slot] += distance * Math.sin(angle[slot]);
+    }
+
+    /* Deterministic physics (see FixedPoint) */
+
+    // Puts the orb's position on the fixed-point grid and rounds its angle to the nearest angle unit.
+    public void quantize(int slot){
+        x[slot] = FixedPoint.quantize(x[slot]);
+        y[slot] = FixedPoint.quantize(y[slot]);
+        angle[slot] = FixedPoint.toRadians(FixedPoint.toAngleUnits(angle[slot]));
+    }
+
+    // The same as advance(), but in fixed-point with lookup-table trig. The orb is assumed to be quantized.
+    public void advanceFixed(int slot, double distance){
+        int angleUnits = FixedPoint.toAngleUnits(angle[slot]);
+        long fixedDistance = FixedPoint.toFixed(distance);
+        x[slot] = FixedPoint.toDouble(FixedPoint.toFixed(x[slot]) + FixedPoint.multiply(fixedDistance, FixedPoint.cos(angleUnits)));
+        y[slot] = FixedPoint.toDouble(FixedPoint.toFixed(y[slot]) + FixedPoint.multiply(fixedDistance, FixedPoint.sin(angleUnits)));
+    }
+
+    /* Getters and setters. Note: the slot is assumed to be less than size(). */
+    public double getX(int slot){
+        return x[slot];
+    }
+    public double getY(int slot){
+        return y[slot];
+    }
+    public double getAngle(int slot){
+        return angle[slot];
+    }
+    public double getSpeed(int slot){
+        return speed[slot];
+    }
+    public int getColorOrdinal(int slot){
+        return color[slot];
+    }
+    public int getId(int slot){
+        return id[slot];
+    }
+    public void setAngle(int slot, double newAngle){
+        angle[slot] = newAngle;
+    }
+    public void setSpeed(int slot, double newSpeed){
+        speed[slot] = newSpeed;
+    }
+    public void setPosition(int slot, double newX, double newY){
+        x[slot] = newX;
+        y[slot] = newY;
+    }
+}
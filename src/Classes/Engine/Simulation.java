@@ -0,0 +1,977 @@
+package Classes.Engine;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.abs;
+
+/**
+ * The rules and physics of a single PlayPanel, with no dependencies on JavaFX (or on the Orb, OrbColor and SoundEffect
+ * classes, which load images and media). Everything here works on an OrbBoard and a ShootingOrbBuffer, so it can run
+ * on a machine without a display: a server, a bot tournament or a benchmark. The rest of a team's rules (new rows,
+ * dropping and transferred orbs) are in PanelModel, which owns a Simulation.
+ *
+ * A Simulation can be shared by several threads (the bots simulate their shots in parallel). Each thread gets its own
+ * Outcome buffer.
+ */
+public class Simulation {
+    public static final double ORB_RADIUS = 23.0;
+    public static final double ROW_HEIGHT = Math.sqrt(Math.pow(2* ORB_RADIUS,2) - Math.pow(ORB_RADIUS,2)); // Vertical distance from one Orb row to the next.
+    public static final double FOUR_R_SQUARED = 4 * ORB_RADIUS * ORB_RADIUS;
+    public static final int ARRAY_HEIGHT = 20; // The number of orb rows
+    public static final int ARRAY_WIDTH_PER_CHARACTER = 30; // The number of orb columns per player
+    public static final double PLAYPANEL_WIDTH_PER_PLAYER = 690;
+    public static final double PLAYPANEL_HEIGHT = 1080;
+    public static final double CANNON_Y_POS = 975; // The y-position of the cannon's axis of rotation.
+    public static final int SHOTS_BETWEEN_DROPS = 15*ARRAY_WIDTH_PER_CHARACTER; // After the player shoots this many times, a new row of orbs appears at the top.
+    public static final int DATA_FRAME_RATE = 24; // The game state advances this many frames per second.
+    public static final double GRAVITY = 1000.0; // pixels per second squared
+    public static final double TIME_TO_TRANSFER = 3; // how many seconds it takes for a transfer orb to materialize.
+    public static final int EMPTY_BOARD_AMMUNITION = 4; // The color ordinal (OrbColor.BLACK) that is given as ammunition when there are no orbs in the orbArray.
+    private static final double[] ORB_SPEEDS = {720.0, 720.0, 720.0, 720.0, 720.0, 720.0}; // pixels per second, indexed by color ordinal (see OrbColor).
+    private static final long EVEN_COLUMNS = 0x5555555555555555L; // The bits of the even columns in a word of an OrbBoard bit-plane.
+    private static final int MAX_CACHED_TRAJECTORIES = 4096;
+
+    private final int numPlayers;
+    private final double rightWall; // The x-position of the right edge of the PlayPanel.
+    private final boolean deterministicPhysics; // If true, shooting orbs are simulated in fixed-point (see FixedPoint).
+    private final boolean shooterCollisions; // If true, shooting orbs bounce off each other.
+    private final boolean batchedCollisionTests; // If true, the array orbs on each row are tested for collision in batches (see collideRow).
+    private static final ThreadLocal<int[]> colorCounts = ThreadLocal.withInitial(() -> new int[OrbBoard.NUM_COLORS]); // Scratch space for pickAmmunitionColor, which is called for every shot (real or imagined).
+    private final ThreadLocal<Outcome> outcomeBuffers = ThreadLocal.withInitial(() -> new Outcome()); // Reused by simulateOrbs. The bots call simulateOrbs from several threads.
+    private final Map<Long, Trajectory> trajectories = new ConcurrentHashMap<>(); // Keyed by Trajectory.hash. See getTrajectory.
+    private final OrbBoard emptyBoard; // For tracing trajectories. Never modified.
+
+    public Simulation(int numPlayers, boolean deterministicPhysics, boolean shooterCollisions, boolean batchedCollisionTests){
+        this.numPlayers = numPlayers;
+        this.deterministicPhysics = deterministicPhysics;
+        this.shooterCollisions = shooterCollisions;
+        this.batchedCollisionTests = batchedCollisionTests;
+        rightWall = PLAYPANEL_WIDTH_PER_PLAYER*numPlayers + ORB_RADIUS;
+        emptyBoard = new OrbBoard(getArrayWidth());
+    }
+
+    public int getNumPlayers(){
+        return numPlayers;
+    }
+
+    public int getArrayWidth(){
+        return ARRAY_WIDTH_PER_CHARACTER*numPlayers;
+    }
+
+    public boolean isDeterministicPhysics(){
+        return deterministicPhysics;
+    }
+
+    public boolean isShooterCollisions(){
+        return shooterCollisions;
+    }
+
+    public boolean isBatchedCollisionTests(){
+        return batchedCollisionTests;
+    }
+
+    /* *********************************************** UTILITY *********************************************** */
+
+    // note to self: watch out for snapping and bursting shootingOrbs, as well as arrayOrbsToBurst and deathOrbsToBurst that were added in an earlier loop iteration.
+    // Same-color groups are found with a flood fill on the board's bit-plane for the snapped orb's color.
+    public void findPatternCompletions(Outcome outcome, OrbBoard board){
+        long[] mask = outcome.mask;
+        long[] group = outcome.group;
+        ShootingOrbBuffer shootingOrbs = outcome.shootingOrbs;
+        for(int k=0; k<outcome.shootingOrbsToSnap.size(); k++){
+            int slot = outcome.shootingOrbsToSnap.get(k);
+            int colorOrdinal = shootingOrbs.getColorOrdinal(slot);
+            int iSnap = outcome.snapI.get(k);
+            int jSnap = outcome.snapJ.get(k);
+            if(!board.isValid(iSnap, jSnap)) continue; // tick() will burst the orb.
+
+            // The cells that may be part of the group: orbs of the same color that aren't already bursting...
+            board.copyColorPlane(colorOrdinal, mask);
+            clearCells(board, mask, outcome.arrayOrbsToBurst);
+            clearCells(board, mask, outcome.deathOrbsToBurst);
+            // ...where snapping shooting orbs take the place of whatever is on the board:
+            for(int m=0; m<outcome.shootingOrbsToSnap.size(); m++){
+                int otherSlot = outcome.shootingOrbsToSnap.get(m);
+                int iOther = outcome.snapI.get(m);
+                int jOther = outcome.snapJ.get(m);
+                if(!board.isValid(iOther, jOther)) continue;
+                board.clearBit(mask, iOther, jOther);
+                if(shootingOrbs.getColorOrdinal(otherSlot)==colorOrdinal && !outcome.isShootingOrbBursting(otherSlot) && !outcome.isShootingOrbDropping(otherSlot)){
+                    board.setBit(mask, iOther, jOther);
+                }
+            }
+            board.setBit(mask, iSnap, jSnap);
+
+            // find all connected orbs of the same color
+            Arrays.fill(group, 0);
+            board.setBit(group, iSnap, jSnap);
+            int groupSize = board.floodFill(mask, group);
+
+            // determine whether there are enough connected Orbs to burst them:
+            if(groupSize >= 3){
+                // If there are a sufficient number grouped together, then some of them will become transfer-out Orbs:
+                int numTransferOrbs = (groupSize-3)/2;
+                if(numTransferOrbs > 0) outcome.events.add(Outcome.Event.GROUP_TRANSFER);
+
+                // add the orbs to the appropriate OrbsToBurst list. Shooting orbs are removed from the group first, so
+                // that only array and death orbs are left in it:
+                IntList burstingShootingOrbs = outcome.burstingShootingOrbs;
+                burstingShootingOrbs.clear();
+                for(int m=0; m<outcome.shootingOrbsToSnap.size(); m++){
+                    int iOther = outcome.snapI.get(m);
+                    int jOther = outcome.snapJ.get(m);
+                    if(board.isValid(iOther, jOther) && board.testBit(group, iOther, jOther)){
+                        outcome.burstShootingOrb(outcome.shootingOrbsToSnap.get(m));
+                        burstingShootingOrbs.add(outcome.shootingOrbsToSnap.get(m));
+                        board.clearBit(group, iOther, jOther);
+                    }
+                }
+                int wordsPerRow = board.getWordsPerRow();
+                for(int w=0; w<group.length; w++){
+                    long word = group[w];
+                    while(word!=0){
+                        int i = w/wordsPerRow;
+                        int j = (w%wordsPerRow)*64 + Long.numberOfTrailingZeros(word);
+                        word &= word-1;
+                        outcome.burstCell(board, board.cellOf(i,j));
+                        if(numTransferOrbs > 0){
+                            outcome.burstOrbsToTransfer.add(board.cellOf(i,j)); // tick() makes a copy of the corresponding Orb.
+                            numTransferOrbs--;
+                        }
+                    }
+                }
+                for(int m=0; m<burstingShootingOrbs.size() && numTransferOrbs>0; m++, numTransferOrbs--){
+                    outcome.shootingOrbsToTransfer.add(burstingShootingOrbs.get(m));
+                }
+            }
+        }
+    }
+
+    // Clears the bits of the given cells in the plane.
+    private void clearCells(OrbBoard board, long[] plane, IntList cells){
+        for(int k=0; k<cells.size(); k++){
+            int cell = cells.get(k);
+            board.clearBit(plane, board.rowOf(cell), board.columnOf(cell));
+        }
+    }
+
+    // find all orbs connected to the ceiling, with a flood fill over the orbs that aren't bursting:
+    public void findConnectedOrbs(Outcome outcome, OrbBoard board){
+        long[] mask = outcome.mask;
+        board.copyOccupancy(mask);
+        clearCells(board, mask, outcome.arrayOrbsToBurst);
+        clearCells(board, mask, outcome.deathOrbsToBurst);
+        for(int k=0; k<outcome.shootingOrbsToSnap.size(); k++){
+            int slot = outcome.shootingOrbsToSnap.get(k);
+            int i = outcome.snapI.get(k);
+            int j = outcome.snapJ.get(k);
+            if(!board.isValid(i, j)) continue;
+            board.clearBit(mask, i, j);
+            if(!outcome.isShootingOrbBursting(slot) && !outcome.isShootingOrbDropping(slot)){
+                board.setBit(mask, i, j);
+            }
+        }
+
+        // The search starts from every orb on the top row:
+        long[] connected = outcome.connected;
+        Arrays.fill(connected, 0);
+        System.arraycopy(mask, 0, connected, 0, board.getWordsPerRow());
+        board.floodFill(mask, connected);
+    }
+
+    // note to self: watch out for snapping, bursting, AND dropping orbs.
+    // Counts the neighbors of the given cell that have the given color, as they will be at the end of the frame.
+    public int countNeighborsOfColor(Outcome outcome, int i, int j, int colorOrdinal, OrbBoard board){
+        int count = 0;
+        for(int k=0; k<OrbBoard.NEIGHBOR_DI.length; k++){
+            int iTest = i + OrbBoard.NEIGHBOR_DI[k];
+            int jTest = j + OrbBoard.NEIGHBOR_DJ[k];
+            int slot = findShootingOrbToSnap(outcome, iTest, jTest, board);
+            if (slot!=-1){
+                if(!outcome.isShootingOrbBursting(slot) && !outcome.isShootingOrbDropping(slot)){
+                    if(outcome.shootingOrbs.getColorOrdinal(slot)==colorOrdinal) ++count;
+                }
+            }
+            else if(board.isValid(iTest,jTest) && board.isOccupied(iTest,jTest) && board.getColorOrdinal(iTest,jTest)==colorOrdinal){
+                int cell = board.cellOf(iTest,jTest);
+                if(!outcome.isCellBursting(cell) && !outcome.isCellDropping(cell)) ++count;
+            }
+        }
+        return count;
+    }
+
+    // Returns the slot of the shooting orb that will snap to the given coordinates, or -1 if there is none.
+    public int findShootingOrbToSnap(Outcome outcome, int i, int j, OrbBoard board){
+        if(board.isValid(i,j)) return outcome.getSnapSlot(board.cellOf(i,j));
+
+        // Snap coordinates off the edge of the board aren't in the grid (see tick()):
+        for(int k=0; k<outcome.shootingOrbsToSnap.size(); k++){
+            if(outcome.snapI.get(k)==i && outcome.snapJ.get(k)==j){
+                return outcome.shootingOrbsToSnap.get(k);
+            }
+        }
+        return -1;
+    }
+
+    public boolean isArrayOrbBursting(Outcome outcome, int i, int j, OrbBoard board){
+        return outcome.isCellBursting(board.cellOf(i,j));
+    }
+
+    public boolean isDeathOrbsBursting(Outcome outcome, int i, int j, OrbBoard board){
+        return outcome.isCellBursting(board.cellOf(i,j));
+    }
+
+    // Finds floating orbs and drops them. Must be called after findConnectedOrbs.
+    public void findFloatingOrbs(Outcome outcome, OrbBoard board){
+        // any orbs in the array that are not connected are floating.
+        for(int i=0; i<ARRAY_HEIGHT; i++){
+            if(board.isRowEmpty(i)) continue;
+            for(int j=0; j<board.getWidth(); j++){
+                if(board.isOccupied(i,j) && !isArrayOrbBursting(outcome, i, j, board) && !board.testBit(outcome.connected, i, j)){
+                    outcome.dropCell(board.cellOf(i,j));
+                }
+            }
+        }
+
+        // any orbs in the deathOrbs array that are not connected are floating
+        for(int j=0; j<board.getWidth(); j++){
+            if(board.isOccupied(ARRAY_HEIGHT,j) && !isDeathOrbsBursting(outcome, ARRAY_HEIGHT, j, board) && !board.testBit(outcome.connected, ARRAY_HEIGHT, j)){
+                outcome.dropCell(board.cellOf(ARRAY_HEIGHT,j));
+            }
+        }
+
+        // any snapped shootingOrbs that are not connected are floating
+        for(int k=0; k<outcome.shootingOrbsToSnap.size(); k++){
+            int slot = outcome.shootingOrbsToSnap.get(k);
+            int i = outcome.snapI.get(k);
+            int j = outcome.snapJ.get(k);
+            if(board.isValid(i,j) && !outcome.isShootingOrbBursting(slot) && !board.testBit(outcome.connected, i, j)){
+                outcome.dropShootingOrb(slot);
+            }
+        }
+    }
+
+    /* *********************************************** SIMULATION *********************************************** */
+
+    // Simulates the given shooting orbs for deltaTime seconds. The buffer itself is not modified; the results are in
+    // outcome.shootingOrbs. Neither is the board; see applyOutcome.
+    // note: The returned Outcome belongs to the calling thread, and is overwritten by that thread's next call to this method.
+    public Outcome simulateOrbs(OrbBoard board, ShootingOrbBuffer shootingOrbs, double deltaTime){
+        Outcome outcome = outcomeBuffers.get();
+        outcome.reset(board, shootingOrbs);
+        simulateOrbs(outcome, board, deltaTime);
+        return outcome;
+    }
+
+    private void simulateOrbs(Outcome outcome, OrbBoard board, double deltaTime){
+        if(deterministicPhysics){
+            for(int slot=0; slot<outcome.shootingOrbs.size(); slot++) outcome.shootingOrbs.quantize(slot);
+        }
+
+        // Advance shooting orbs and detect collisions:
+        advanceShootingOrbs(outcome, board, deltaTime); // Updates model
+
+        settleOrbs(outcome, board);
+    }
+
+    // The rest of a simulated frame, once the shooting orbs have been advanced.
+    private void settleOrbs(Outcome outcome, OrbBoard board){
+        // Snap any landed shooting orbs into place on the orbArray (or deathOrbs array):
+        snapOrbs(outcome, board);
+
+        // Determine whether any of the snapped orbs cause any orbs to burst:
+        findPatternCompletions(outcome, board);
+
+        // Drop floating orbs. These are possible only if array orbs have burst. On other frames, nothing is searched;
+        // the board's connectivity index already knows which orbs are connected to the ceiling.
+        if(!outcome.arrayOrbsToBurst.isEmpty()){
+            findConnectedOrbs(outcome, board);
+            findFloatingOrbs(outcome, board);
+        }
+    }
+
+    // Initiated 24 times per second.
+    // advances all shooting orbs one full frame, detecting collisions along the way and stopping orbs that collide with
+    // arrayOrbs or with the ceiling. Some of the orbs that stop may end up bursting instead during the call to snapOrbs
+    // if (and only if) s-s collisions are turned off.
+    // The collisions are handled in order of time, with an ImpactQueue. The next impact of each shooting orb is
+    // predicted from its current path, and only the orbs involved in an impact have their predictions redone; the
+    // board doesn't change during the frame, so nobody else's predictions are affected. Each orb also keeps the time up
+    // to which it has been advanced, and is only moved when it is involved in an impact (and at the end of the frame).
+    // Note: recall that the y-axis points downward and shootingOrb.getCannonAngle() returns a negative value.
+    public void advanceShootingOrbs(Outcome outcome, OrbBoard board, double frameTime) {
+        ShootingOrbBuffer shootingOrbs = outcome.shootingOrbs;
+        ImpactQueue impacts = outcome.impacts;
+        impacts.clear();
+        for(int slot=0; slot<shootingOrbs.size(); slot++){
+            outcome.orbTimes[slot] = 0.0;
+            outcome.orbVersions[slot] = 0;
+        }
+        for(int slot=0; slot<shootingOrbs.size(); slot++){
+            predictImpacts(outcome, board, slot, slot+1, frameTime); // Each pair of shooting orbs only needs to be considered once.
+        }
+
+        while(!impacts.isEmpty()){
+            int event = impacts.poll();
+            int slot = impacts.getShooterSlot(event);
+            int arrayI = impacts.getArrayI(event);
+            int otherSlot = impacts.getArrayJ(event); // Only meaningful if arrayI==SHOOTER.
+            if(impacts.getShooterVersion(event)!=outcome.orbVersions[slot]) continue; // The orb's path has changed since this was predicted.
+            if(arrayI==Collision.SHOOTER && impacts.getOtherVersion(event)!=outcome.orbVersions[otherSlot]) continue;
+            double time = impacts.getTime(event);
+            advanceShootingOrbTo(outcome, slot, time);
+
+            // If there was a collision with a wall, then just reflect the shooter orb's angle.
+            if(arrayI == Collision.WALL){
+                outcome.events.add(Outcome.Event.WALL_BOUNCE);
+                bounceOffWall(shootingOrbs, slot);
+            }
+
+            // If the collision is between two shooter orbs, compute new angles and speeds:
+            else if(arrayI == Collision.SHOOTER){
+                advanceShootingOrbTo(outcome, otherSlot, time);
+                collideShootingOrbs(outcome, slot, otherSlot);
+                outcome.orbVersions[otherSlot]++;
+            }
+
+            // If the collision was with the ceiling or with an array orb, set that orb's speed to zero and add it to the
+            // collisions list.
+            else{
+                shootingOrbs.setSpeed(slot, 0.0);
+                outcome.soonestCollision.set(slot, arrayI, otherSlot, time);
+                outcome.addCollision(outcome.soonestCollision);
+            }
+
+            // Predict the next impacts of the orb(s) involved:
+            outcome.orbVersions[slot]++;
+            predictImpacts(outcome, board, slot, 0, frameTime);
+            if(arrayI == Collision.SHOOTER) predictImpacts(outcome, board, otherSlot, 0, frameTime);
+        }
+
+        // There are no more collisions this frame. Advance all orbs to the end of it:
+        for(int slot=0; slot<shootingOrbs.size(); slot++){
+            advanceShootingOrbTo(outcome, slot, frameTime);
+        }
+    }
+
+    // Adds the next impacts of the shooting orb in the given slot to the queue: the soonest of its impacts with the
+    // walls, the ceiling and the array, and (if s-s collisions are turned on) an impact with each of the other shooting
+    // orbs in slots firstOther and up.
+    private void predictImpacts(Outcome outcome, OrbBoard board, int slot, int firstOther, double frameTime){
+        if(outcome.isShootingOrbBursting(slot)) return;
+        double orbTime = outcome.orbTimes[slot];
+        Collision soonestCollision = outcome.soonestCollision;
+        predictBoardImpact(outcome, board, slot, frameTime - orbTime, -1.0, 1.0, soonestCollision);
+        if(soonestCollision.shooterSlot != Collision.NO_SHOOTER){
+            outcome.impacts.add(orbTime + soonestCollision.timeToCollision, slot, soonestCollision.arrayI, soonestCollision.arrayJ, outcome.orbVersions[slot], 0);
+        }
+
+        if(!shooterCollisions) return;
+        for(int otherSlot=firstOther; otherSlot<outcome.shootingOrbs.size(); otherSlot++){
+            if(otherSlot==slot || outcome.isShootingOrbBursting(otherSlot)) continue;
+            double time = predictShooterImpact(outcome, slot, otherSlot);
+            if(time <= frameTime){
+                outcome.impacts.add(time, slot, Collision.SHOOTER, otherSlot, outcome.orbVersions[slot], outcome.orbVersions[otherSlot]);
+            }
+        }
+    }
+
+    // Finds the soonest collision of the shooting orb in the given slot with a wall, the ceiling, or an array orb, if it
+    // travels for the given amount of time along its current path. If a shooter orb's path would put it on a collision
+    // course with any of them, then that collision is considered, even if there is another orb in the way. In case of a
+    // tie, the last one considered wins. If there is no collision, soonestCollision.shooterSlot is set to NO_SHOOTER.
+    // Array orbs are only searched for along the part of the path from scanStart to scanEnd, parameterized from t=-1
+    // (the full path extended backwards) to t=1 (the full path). The walls and ceiling are always checked.
+    private void predictBoardImpact(Outcome outcome, OrbBoard board, int slot, double timeRemainingInFrame,
+                                             double scanStart, double scanEnd, Collision soonestCollision){
+        soonestCollision.set(Collision.NO_SHOOTER, 0, 0, Long.MAX_VALUE);
+        ShootingOrbBuffer shootingOrbs = outcome.shootingOrbs;
+        double speed = shootingOrbs.getSpeed(slot);
+        double angle = shootingOrbs.getAngle(slot);
+        double x0 = shootingOrbs.getX(slot);
+        double y0 = shootingOrbs.getY(slot);
+        if(abs(speed)<0.001) return; // Skip ahead if it appears that this orb is stationary.
+        double distanceToTravel = speed * timeRemainingInFrame;
+        double x1P; // Theoretical x-position of the shooting orb after it is advanced, relative to x0.
+        double y1P; // Theoretical y-position of the shooting orb after it is advanced, relative to y0
+        if(deterministicPhysics){
+            int angleUnits = FixedPoint.toAngleUnits(angle);
+            x1P = distanceToTravel * FixedPoint.toDouble(FixedPoint.cos(angleUnits));
+            y1P = distanceToTravel * FixedPoint.toDouble(FixedPoint.sin(angleUnits));
+        }
+        else{
+            x1P = distanceToTravel * Math.cos(angle);
+            y1P = distanceToTravel * Math.sin(angle);
+        }
+        double tanAngle = y1P/x1P;
+        double onePlusTanAngleSquared = 1+tanAngle*tanAngle; // cached for speed
+
+        // Broad phase: an array orb can only be hit if its center is within 2R of the shooting orb's path. Note that
+        // the exact test below accepts intersection points up to distanceToTravel away in *either* direction along
+        // the line, so the path is extended backwards by the same amount. The extra pixel of reach covers the
+        // special solution used for nearly-vertical shots.
+        double reach = 2*ORB_RADIUS + 1.0;
+        double yScanLow = y0 + Math.min(scanStart*y1P, scanEnd*y1P);
+        double yScanHigh = y0 + Math.max(scanStart*y1P, scanEnd*y1P);
+        int iMin = Math.max(0, (int) Math.floor((yScanLow - reach - ORB_RADIUS)/ROW_HEIGHT));
+        int iMax = Math.min(ARRAY_HEIGHT, (int) Math.ceil((yScanHigh + reach - ORB_RADIUS)/ROW_HEIGHT));
+
+        // Cycle through the rows crossed by the path from bottom to top until we find possible collision points on some row:
+        boolean collisionsFoundOnRow = false;
+        for (int i = iMax; i >= iMin; i--) {
+            if(board.isRowEmpty(i)) continue;
+            double yA = OrbBoard.getYPos(i);
+
+            // Find the part of the scanned path that is within reach of this row, and from it, the span of columns
+            // that could possibly be hit:
+            double tLow = scanStart;
+            double tHigh = scanEnd;
+            if(abs(y1P) > 0.0001){
+                double t1 = (yA - reach - y0)/y1P;
+                double t2 = (yA + reach - y0)/y1P;
+                tLow = Math.max(scanStart, Math.min(t1, t2));
+                tHigh = Math.min(scanEnd, Math.max(t1, t2));
+                if(tLow > tHigh) continue;
+            }
+            else if(abs(yA - y0) > reach) continue;
+            double xLow = x0 + Math.min(tLow*x1P, tHigh*x1P) - reach;
+            double xHigh = x0 + Math.max(tLow*x1P, tHigh*x1P) + reach;
+            int jMin = Math.max(0, (int) Math.ceil((xLow - ORB_RADIUS)/ORB_RADIUS));
+            int jMax = Math.min(board.getWidth()-1, (int) Math.floor((xHigh - ORB_RADIUS)/ORB_RADIUS));
+
+            if(batchedCollisionTests){
+                if(collideRow(outcome, board, slot, i, jMin, jMax, x0, yA - y0, tanAngle, abs(x1P) < 0.01, distanceToTravel, speed, soonestCollision)) break;
+                continue;
+            }
+            for (int j=jMin; j<=jMax; j ++) {
+                if (board.isOccupied(i,j)) { // note to self: we don't need to check for snapping/dropping shooting Orbs or bursting/dropping shooting/array/death Orbs yet.
+                    double xAP = OrbBoard.getXPos(j) - x0;
+                    double yAP = yA - y0;
+                    double lhs = FOUR_R_SQUARED * onePlusTanAngleSquared;
+                    double rhs = (tanAngle * xAP - yAP) * (tanAngle * xAP - yAP);
+                    // Test whether collision is possible. If it is, then compute its 2 possible collision points.
+                    if (lhs > rhs) {
+                        // Compute the two possible intersection points, (xPP, yPP) and (xPN, yPN)
+                        double xPP;
+                        double yPP;
+                        double xPN;
+                        double yPN;
+
+                        // if the Orb is traveling nearly vertically, use a special solution to prevent a near-zero denominator:
+                        if(Math.abs(x1P) < 0.01) {
+                            xPP = 0;
+                            xPN = 0;
+                            double sqrt4R2mxAP2 = Math.sqrt(FOUR_R_SQUARED - xAP * xAP);
+                            yPP = yAP + sqrt4R2mxAP2;
+                            yPN = yAP - sqrt4R2mxAP2;
+                        }
+                        else {
+                            double numerator1 = xAP + tanAngle * yAP;
+                            double numerator2 = Math.sqrt(lhs - rhs);
+                            xPP = (numerator1 + numerator2) / onePlusTanAngleSquared;
+                            yPP = xPP * tanAngle;
+                            xPN = (numerator1 - numerator2) / onePlusTanAngleSquared;
+                            yPN = xPN * tanAngle;
+                        }
+
+                        // Figure out which intersection point is closer, and only add the collision to the list of
+                        // possible collisions if its time-to-collision is less than the time remaining in the frame.
+                        double distanceToCollisionPSquared = xPP * xPP + yPP * yPP;
+                        double distanceToCollisionNSquared = xPN * xPN + yPN * yPN;
+                        if (distanceToCollisionPSquared < distanceToTravel * distanceToTravel
+                                && distanceToCollisionPSquared < distanceToCollisionNSquared) {
+                            double timeToCollision = Math.sqrt(distanceToCollisionPSquared) / speed;
+                            if(timeToCollision <= soonestCollision.timeToCollision) soonestCollision.set(slot, i, j, timeToCollision);
+                            collisionsFoundOnRow = true;
+                        }
+                        else if (distanceToCollisionNSquared < distanceToTravel * distanceToTravel) {
+                            double timeToCollision = Math.sqrt(distanceToCollisionNSquared) / speed;
+                            if(timeToCollision <= soonestCollision.timeToCollision) soonestCollision.set(slot, i, j, timeToCollision);
+                            collisionsFoundOnRow = true;
+                        }
+                    }
+                }
+                // note to self: don't break out of the inner loop if collisionFoundOnRow == true. There may be
+                // multiple Orbs in the shootingOrb's path on this row and it's not necessarily the case that the
+                // first one we find is the closest one.
+
+                // another note to self: If collisions between shooting orbs are turned on, then an Orb may be
+                // traveling downwards. For such orbs, the rows should really be traversed in the other order: from 0
+                // to ARRAY_HEIGHT-1.
+            }
+            if(collisionsFoundOnRow) break;
+        }
+
+        // Check for and add collisions with the wall:
+        double xRightWallP = rightWall - ORB_RADIUS - x0;
+        double xLeftWallP = ORB_RADIUS - x0;
+        double yCeilingP = ORB_RADIUS - y0;
+        if (x1P >= xRightWallP) {
+            double timeToCollision = timeRemainingInFrame * xRightWallP / x1P;
+            if(timeToCollision <= soonestCollision.timeToCollision) soonestCollision.set(slot, Collision.WALL, 0, timeToCollision);
+        }
+        if (x1P <= xLeftWallP) {
+            double timeToCollision = timeRemainingInFrame * xLeftWallP / x1P;
+            if(timeToCollision <= soonestCollision.timeToCollision) soonestCollision.set(slot, Collision.WALL, 0, timeToCollision);
+        }
+
+        // Check for and add collisions with the ceiling:
+        if(y1P<yCeilingP){
+            double timeToCollision = timeRemainingInFrame * yCeilingP / y1P;
+            if(timeToCollision <= soonestCollision.timeToCollision) soonestCollision.set(slot, Collision.CEILING, 0, timeToCollision);
+        }
+    }
+
+    // The same test as the inner loop of predictBoardImpact, for the occupied cells in columns jMin through jMax of
+    // row i, done in batches: the candidates are gathered from the occupancy bitset into lanes, and then each step of
+    // the test is a straight loop over all the lanes, with no branches. The JIT can unroll and vectorize such loops
+    // (including the square roots), which it can't do with the scalar version. Every lane does the exact same
+    // arithmetic as the scalar version, so the results are identical. The lanes are scanned in column order at the
+    // end, so ties are also broken the same way.
+    // yAP is the y-position of the row relative to the shooting orb. Returns true if any collision was found on the row.
+    private boolean collideRow(Outcome outcome, OrbBoard board, int slot, int i, int jMin, int jMax, double x0, double yAP,
+                                        double tanAngle, boolean nearlyVertical, double distanceToTravel, double speed, Collision soonestCollision){
+        int[] columns = outcome.laneColumns;
+        double[] xAPs = outcome.laneX;
+        double[] discriminants = outcome.laneDiscriminants;
+        double[] times = outcome.laneTimes;
+
+        // Gather the occupied cells:
+        int numLanes = 0;
+        for(int w=jMin>>>6; w<=jMax>>>6; w++){
+            long word = board.getOccupancyWord(i, w);
+            if(w==jMin>>>6) word &= -1L << (jMin&63);
+            if(w==jMax>>>6) word &= -1L >>> (63-(jMax&63));
+            while(word!=0){
+                int j = 64*w + Long.numberOfTrailingZeros(word);
+                columns[numLanes] = j;
+                xAPs[numLanes] = OrbBoard.getXPos(j) - x0;
+                numLanes++;
+                word &= word-1;
+            }
+        }
+        if(numLanes==0) return false;
+
+        // Test whether collision is possible (a positive discriminant):
+        double onePlusTanAngleSquared = 1+tanAngle*tanAngle;
+        double lhs = FOUR_R_SQUARED * onePlusTanAngleSquared;
+        for(int k=0; k<numLanes; k++){
+            double rhs = (tanAngle * xAPs[k] - yAP) * (tanAngle * xAPs[k] - yAP);
+            discriminants[k] = lhs - rhs;
+        }
+
+        // Compute the squared distances to the two possible intersection points, and from them the time to the nearer
+        // one, or infinity if neither is reached this frame. Lanes without a collision produce garbage (or NaN), and
+        // are discarded below.
+        double distanceToTravelSquared = distanceToTravel * distanceToTravel;
+        if(nearlyVertical){
+            for(int k=0; k<numLanes; k++){
+                double sqrt4R2mxAP2 = Math.sqrt(FOUR_R_SQUARED - xAPs[k] * xAPs[k]);
+                double yPP = yAP + sqrt4R2mxAP2;
+                double yPN = yAP - sqrt4R2mxAP2;
+                times[k] = nearestCollisionTime(yPP * yPP, yPN * yPN, distanceToTravelSquared, speed);
+            }
+        }
+        else{
+            for(int k=0; k<numLanes; k++){
+                double numerator1 = xAPs[k] + tanAngle * yAP;
+                double numerator2 = Math.sqrt(Math.max(discriminants[k], 0.0));
+                double xPP = (numerator1 + numerator2) / onePlusTanAngleSquared;
+                double yPP = xPP * tanAngle;
+                double xPN = (numerator1 - numerator2) / onePlusTanAngleSquared;
+                double yPN = xPN * tanAngle;
+                times[k] = nearestCollisionTime(xPP * xPP + yPP * yPP, xPN * xPN + yPN * yPN, distanceToTravelSquared, speed);
+            }
+        }
+
+        // Keep the soonest collision:
+        boolean collisionsFoundOnRow = false;
+        for(int k=0; k<numLanes; k++){
+            if(discriminants[k] > 0 && times[k] != Double.POSITIVE_INFINITY){
+                if(times[k] <= soonestCollision.timeToCollision) soonestCollision.set(slot, i, columns[k], times[k]);
+                collisionsFoundOnRow = true;
+            }
+        }
+        return collisionsFoundOnRow;
+    }
+
+    // Used by collideRow. Chooses between the two intersection points the same way as predictBoardImpact.
+    private static double nearestCollisionTime(double distanceToCollisionPSquared, double distanceToCollisionNSquared,
+                                                        double distanceToTravelSquared, double speed){
+        if(distanceToCollisionPSquared < distanceToTravelSquared && distanceToCollisionPSquared < distanceToCollisionNSquared){
+            return Math.sqrt(distanceToCollisionPSquared) / speed;
+        }
+        else if(distanceToCollisionNSquared < distanceToTravelSquared){
+            return Math.sqrt(distanceToCollisionNSquared) / speed;
+        }
+        else return Double.POSITIVE_INFINITY;
+    }
+
+    // Returns the time (since the start of the frame) at which the two shooting orbs will touch if they stay on their
+    // current paths, or infinity if they won't. Orbs that are already touching count only if they are approaching.
+    private double predictShooterImpact(Outcome outcome, int slot, int otherSlot){
+        ShootingOrbBuffer shootingOrbs = outcome.shootingOrbs;
+        double vx = getVelocityX(shootingOrbs, slot);
+        double vy = getVelocityY(shootingOrbs, slot);
+        double otherVx = getVelocityX(shootingOrbs, otherSlot);
+        double otherVy = getVelocityY(shootingOrbs, otherSlot);
+
+        // The orbs may have been advanced to different times. Compare them at the later of the two:
+        double startTime = Math.max(outcome.orbTimes[slot], outcome.orbTimes[otherSlot]);
+        double dx = (shootingOrbs.getX(otherSlot) + otherVx*(startTime - outcome.orbTimes[otherSlot])) - (shootingOrbs.getX(slot) + vx*(startTime - outcome.orbTimes[slot]));
+        double dy = (shootingOrbs.getY(otherSlot) + otherVy*(startTime - outcome.orbTimes[otherSlot])) - (shootingOrbs.getY(slot) + vy*(startTime - outcome.orbTimes[slot]));
+        double wx = otherVx - vx;
+        double wy = otherVy - vy;
+
+        // Solve |d + w*t| = 2R for the first t:
+        double a = wx*wx + wy*wy;
+        double b = 2*(dx*wx + dy*wy);
+        double c = dx*dx + dy*dy - FOUR_R_SQUARED;
+        if(b >= 0 || a < 0.000001) return Double.POSITIVE_INFINITY; // They aren't approaching each other.
+        if(c <= 0){
+            // They are already touching. This only counts if they approach at more than about a pixel per second, so
+            // that rounding errors can't make the same two orbs bounce off each other forever:
+            if(b < -4*ORB_RADIUS) return startTime;
+            else return Double.POSITIVE_INFINITY;
+        }
+        double discriminant = b*b - 4*a*c;
+        if(discriminant < 0) return Double.POSITIVE_INFINITY; // They pass each other by.
+        return startTime + (-b - Math.sqrt(discriminant))/(2*a);
+    }
+
+    // Bounces two touching shooting orbs off each other. They have the same mass, so they exchange the components of
+    // their velocities along the line between their centers. If one of them has stopped because it is in the process
+    // of snapping, the other one bursts instead.
+    private void collideShootingOrbs(Outcome outcome, int slot, int otherSlot){
+        ShootingOrbBuffer shootingOrbs = outcome.shootingOrbs;
+        boolean moving = abs(shootingOrbs.getSpeed(slot)) >= 0.001;
+        boolean otherMoving = abs(shootingOrbs.getSpeed(otherSlot)) >= 0.001;
+        if(!moving || !otherMoving){
+            int burstingSlot = moving ? slot : otherSlot;
+            shootingOrbs.setSpeed(burstingSlot, 0.0);
+            outcome.burstShootingOrb(burstingSlot);
+            return;
+        }
+
+        double nx = shootingOrbs.getX(otherSlot) - shootingOrbs.getX(slot);
+        double ny = shootingOrbs.getY(otherSlot) - shootingOrbs.getY(slot);
+        double distance = Math.sqrt(nx*nx + ny*ny);
+        if(distance == 0) return;
+        nx /= distance;
+        ny /= distance;
+        double vx = getVelocityX(shootingOrbs, slot);
+        double vy = getVelocityY(shootingOrbs, slot);
+        double otherVx = getVelocityX(shootingOrbs, otherSlot);
+        double otherVy = getVelocityY(shootingOrbs, otherSlot);
+        double exchange = (otherVx - vx)*nx + (otherVy - vy)*ny;
+        setVelocity(shootingOrbs, slot, vx + exchange*nx, vy + exchange*ny);
+        setVelocity(shootingOrbs, otherSlot, otherVx - exchange*nx, otherVy - exchange*ny);
+        outcome.events.add(Outcome.Event.SHOOTER_BOUNCE);
+    }
+
+    private double getVelocityX(ShootingOrbBuffer shootingOrbs, int slot){
+        if(deterministicPhysics) return shootingOrbs.getSpeed(slot) * FixedPoint.toDouble(FixedPoint.cos(FixedPoint.toAngleUnits(shootingOrbs.getAngle(slot))));
+        else return shootingOrbs.getSpeed(slot) * Math.cos(shootingOrbs.getAngle(slot));
+    }
+
+    private double getVelocityY(ShootingOrbBuffer shootingOrbs, int slot){
+        if(deterministicPhysics) return shootingOrbs.getSpeed(slot) * FixedPoint.toDouble(FixedPoint.sin(FixedPoint.toAngleUnits(shootingOrbs.getAngle(slot))));
+        else return shootingOrbs.getSpeed(slot) * Math.sin(shootingOrbs.getAngle(slot));
+    }
+
+    private void setVelocity(ShootingOrbBuffer shootingOrbs, int slot, double vx, double vy){
+        if(deterministicPhysics){
+            shootingOrbs.setAngle(slot, StrictMath.atan2(vy, vx));
+            shootingOrbs.setSpeed(slot, FixedPoint.quantize(StrictMath.sqrt(vx*vx + vy*vy)));
+            shootingOrbs.quantize(slot);
+        }
+        else{
+            shootingOrbs.setAngle(slot, Math.atan2(vy, vx));
+            shootingOrbs.setSpeed(slot, Math.sqrt(vx*vx + vy*vy));
+        }
+    }
+
+    // Reflects the orb's angle off a side wall.
+    private void bounceOffWall(ShootingOrbBuffer shootingOrbs, int slot){
+        if(deterministicPhysics) shootingOrbs.setAngle(slot, FixedPoint.toRadians(FixedPoint.HALF_TURN - FixedPoint.toAngleUnits(shootingOrbs.getAngle(slot))));
+        else shootingOrbs.setAngle(slot, PI - shootingOrbs.getAngle(slot));
+    }
+
+    // Moves the shooting orb in the given slot along its path, from the time it has been advanced to so far up to the
+    // given time.
+    private void advanceShootingOrbTo(Outcome outcome, int slot, double time){
+        ShootingOrbBuffer shootingOrbs = outcome.shootingOrbs;
+        advanceShootingOrb(shootingOrbs, slot, shootingOrbs.getSpeed(slot) * (time - outcome.orbTimes[slot]));
+        outcome.orbTimes[slot] = time;
+    }
+
+    private void advanceShootingOrb(ShootingOrbBuffer shootingOrbs, int slot, double distance){
+        if(deterministicPhysics) shootingOrbs.advanceFixed(slot, distance);
+        else shootingOrbs.advance(slot, distance);
+    }
+
+    // note to self: watch out for shootingOrbsToSnap and shootingOrbsToBurst that were added in a previous loop iteration.
+    public void snapOrbs(Outcome outcome, OrbBoard board){
+        for(int k=0; k<outcome.numCollisions; k++){
+            Collision snap = outcome.collisions.get(k);
+            int iSnap;
+            int jSnap;
+
+            // Compute snap coordinates for orbs that collided with the ceiling
+            if(snap.arrayI == Collision.CEILING){
+                int offset = board.getRowParity(0);
+                double xPos = outcome.shootingOrbs.getX(snap.shooterSlot);
+                iSnap = 0;
+                jSnap = 2*((int) Math.round((xPos - ORB_RADIUS)/(2*ORB_RADIUS))) + offset;
+            }
+
+            // Compute snap coordinates for orbs that collided with an array orb
+            else{
+                // Recompute the collision angle:
+                double shooterX = outcome.shootingOrbs.getX(snap.shooterSlot);
+                double shooterY = outcome.shootingOrbs.getY(snap.shooterSlot);
+                double arrayX = OrbBoard.getXPos(snap.arrayJ);
+                double arrayY = OrbBoard.getYPos(snap.arrayI);
+                double collisionAngleDegrees;
+                if(deterministicPhysics) collisionAngleDegrees = exactCollisionAngle(shooterX-arrayX, shooterY-arrayY);
+                else collisionAngleDegrees = Math.toDegrees(Math.atan2(shooterY-arrayY, shooterX-arrayX));
+
+                // set snap coordinates based on angle:
+                if(collisionAngleDegrees<30 && collisionAngleDegrees>=-30){ // Collided with right side of array orb
+                    iSnap = snap.arrayI;
+                    jSnap = snap.arrayJ+2;
+                }
+                else if(collisionAngleDegrees<90 && collisionAngleDegrees>=30){ // Collided with lower-right side of array orb
+                    iSnap = snap.arrayI+1;
+                    jSnap = snap.arrayJ+1;
+                }
+                else if(collisionAngleDegrees<150 && collisionAngleDegrees>=90){ // Collided with lower-left side of array orb
+                    iSnap = snap.arrayI+1;
+                    jSnap = snap.arrayJ-1;
+                }
+                else if(collisionAngleDegrees<-150 || collisionAngleDegrees>=150){ // Collided with left side of array orb
+                    iSnap = snap.arrayI;
+                    jSnap = snap.arrayJ-2;
+                }
+                else if(collisionAngleDegrees<-90 && collisionAngleDegrees>=-150){ // Collided with upper-left side of array orb
+                    iSnap = snap.arrayI-1;
+                    jSnap = snap.arrayJ-1;
+                }
+                else { // Collided with upper-right side of the array orb
+                    iSnap = snap.arrayI-1;
+                    jSnap = snap.arrayJ+1;
+                }
+            }
+
+            // If s-s collisions are turned off, it is possible for two shooter orbs to try to snap to the same
+            // location. If that's the case, then burst the second orb that attempts to snap there.
+            if(findShootingOrbToSnap(outcome, iSnap, jSnap, board)!=-1){
+                outcome.burstShootingOrb(snap.shooterSlot);
+            }
+            else{
+                outcome.addSnap(board, snap.shooterSlot, iSnap, jSnap);
+                outcome.events.add(Outcome.Event.PLACEMENT);
+            }
+        }
+    }
+
+    // Used instead of atan2 by the deterministic physics mode. Returns the center of the 60-degree side of the array orb
+    // that (dx, dy) points to (0 for the right side, 60 for the lower-right side, and so on), deciding the sides with
+    // integer arithmetic only. The sides are split at +/-30, +/-90 and +/-150 degrees, where tan(30)^2 == 1/3.
+    private static double exactCollisionAngle(double dx, double dy){
+        long x = FixedPoint.toFixed(dx);
+        long y = FixedPoint.toFixed(dy);
+        long threeYSquared = 3*y*y;
+        long xSquared = x*x;
+        if(x==0 && y==0) return 0;
+        if(x>0 && (threeYSquared<xSquared || (threeYSquared==xSquared && y<0))) return 0; // right
+        if(x<0 && (threeYSquared<xSquared || (threeYSquared==xSquared && y>0))) return 180; // left
+        if(y>0) return (x>0) ? 60 : 120; // lower-right or lower-left
+        return (x<0) ? -120 : -60; // upper-left or upper-right
+    }
+
+    /* *********************************************** TRAJECTORIES *********************************************** */
+
+    // Returns the trajectory of a shooting orb fired from the given position, at the given angle (radians) and speed,
+    // over the given amount of time. Trajectories are traced on an empty board and cached, since the bots ask for the
+    // same angles every time they think.
+    public Trajectory getTrajectory(double x, double y, double angle, double speed, double frameTime){
+        long key = Trajectory.hash(x, y, angle, speed, frameTime);
+        Trajectory trajectory = trajectories.get(key);
+        if(trajectory==null || !trajectory.matches(x, y, angle, speed, frameTime)){
+            if(trajectories.size()>=MAX_CACHED_TRAJECTORIES) trajectories.clear();
+            trajectory = traceTrajectory(x, y, angle, speed, frameTime);
+            trajectories.put(key, trajectory);
+        }
+        return trajectory;
+    }
+
+    // Follows a single shooting orb across the empty board the same way advanceShootingOrbs would, recording the state
+    // of the orb after each wall bounce.
+    private Trajectory traceTrajectory(double x, double y, double angle, double speed, double frameTime){
+        Outcome outcome = outcomeBuffers.get();
+        outcome.shot.clear();
+        outcome.shot.add(x, y, angle, speed, 0, 0);
+        outcome.reset(emptyBoard, outcome.shot);
+        ShootingOrbBuffer shootingOrbs = outcome.shootingOrbs;
+        if(deterministicPhysics) shootingOrbs.quantize(0);
+        outcome.orbTimes[0] = 0.0;
+
+        Trajectory trajectory = new Trajectory(x, y, angle, speed, frameTime);
+        Collision soonestCollision = outcome.soonestCollision;
+        while(true){
+            double orbTime = outcome.orbTimes[0];
+            predictBoardImpact(outcome, emptyBoard, 0, frameTime - orbTime, -1.0, 1.0, soonestCollision);
+            double duration = (soonestCollision.shooterSlot==Collision.NO_SHOOTER) ? frameTime - orbTime : soonestCollision.timeToCollision;
+            trajectory.addSegment(shootingOrbs.getX(0), shootingOrbs.getY(0), shootingOrbs.getAngle(0), orbTime, duration);
+            if(soonestCollision.shooterSlot==Collision.NO_SHOOTER || soonestCollision.arrayI!=Collision.WALL) break;
+            advanceShootingOrbTo(outcome, 0, orbTime + soonestCollision.timeToCollision);
+            bounceOffWall(shootingOrbs, 0);
+        }
+        return trajectory;
+    }
+
+    // Simulates a single shot along the given trajectory, with a shooting orb of the given color (by ordinal). The
+    // result is the same as that of simulateOrbs for a buffer containing just that orb (with id 0), but the board is
+    // only searched along each segment of the trajectory, instead of along the rest of the orb's entire path (and
+    // backwards from it) after every bounce.
+    // Note: like simulateOrbs, this reuses the calling thread's Outcome.
+    public Outcome simulateShot(OrbBoard board, Trajectory trajectory, int colorOrdinal){
+        Outcome outcome = outcomeBuffers.get();
+        outcome.shot.clear();
+        outcome.shot.add(trajectory.getX(), trajectory.getY(), trajectory.getAngle(), trajectory.getSpeed(), colorOrdinal, 0);
+        outcome.reset(board, outcome.shot);
+        ShootingOrbBuffer shootingOrbs = outcome.shootingOrbs;
+        if(deterministicPhysics) shootingOrbs.quantize(0);
+        outcome.orbTimes[0] = 0.0;
+
+        double frameTime = trajectory.getFrameTime();
+        Collision soonestCollision = outcome.soonestCollision;
+        for(int segment=0; segment<trajectory.getNumSegments(); segment++){
+            if(segment>0){
+                outcome.events.add(Outcome.Event.WALL_BOUNCE);
+                shootingOrbs.setPosition(0, trajectory.getSegmentX(segment), trajectory.getSegmentY(segment));
+                shootingOrbs.setAngle(0, trajectory.getSegmentAngle(segment));
+                outcome.orbTimes[0] = trajectory.getStartTime(segment);
+            }
+            double orbTime = outcome.orbTimes[0];
+            double timeRemaining = frameTime - orbTime;
+            predictBoardImpact(outcome, board, 0, timeRemaining, 0.0, Math.min(1.0, trajectory.getDuration(segment)/timeRemaining), soonestCollision);
+            if(soonestCollision.shooterSlot==Collision.NO_SHOOTER) break; // Only possible on the last segment.
+            if(soonestCollision.arrayI==Collision.WALL) continue; // The orb bounces, and the next segment takes over.
+
+            // The orb stops at the ceiling or an array orb:
+            double time = orbTime + soonestCollision.timeToCollision;
+            advanceShootingOrbTo(outcome, 0, time);
+            shootingOrbs.setSpeed(0, 0.0);
+            soonestCollision.set(0, soonestCollision.arrayI, soonestCollision.arrayJ, time);
+            outcome.addCollision(soonestCollision);
+            break;
+        }
+        advanceShootingOrbTo(outcome, 0, frameTime);
+
+        settleOrbs(outcome, board);
+        return outcome;
+    }
+
+    /* *********************************************** RULES *********************************************** */
+
+    // Applies the outcome to the board: snapped shooting orbs are placed (unless they are also bursting or dropping), and
+    // bursting and dropping array orbs are removed. Called by PanelModel.tickOrbs(). PlayPanel mirrors it on the orbArray.
+    public void applyOutcome(OrbBoard board, Outcome outcome){
+        for(int k=0; k<outcome.shootingOrbsToSnap.size(); k++){
+            int slot = outcome.shootingOrbsToSnap.get(k);
+            if(outcome.isShootingOrbBursting(slot) || outcome.isShootingOrbDropping(slot)) continue;
+            int i = outcome.snapI.get(k);
+            int j = outcome.snapJ.get(k);
+            if(board.isValid(i, j)) board.set(i, j, outcome.shootingOrbs.getColorOrdinal(slot));
+            // If the snap coordinates are somehow off the edge of the array, then just burst the orb. This should
+            // never happen, but... you never know.
+            else{
+                System.err.println("Invalid snap coordinates [" + i + ", " + j + "] detected. Bursting orb.");
+                System.err.println("   shooter orb info: color=" + outcome.shootingOrbs.getColorOrdinal(slot) + " x=" + outcome.shootingOrbs.getX(slot) + " y=" + outcome.shootingOrbs.getY(slot) + " speed=" + outcome.shootingOrbs.getSpeed(slot));
+                outcome.burstShootingOrb(slot);
+            }
+        }
+        for(int k=0; k<outcome.arrayOrbsToBurst.size(); k++){
+            int cell = outcome.arrayOrbsToBurst.get(k);
+            board.clear(board.rowOf(cell), board.columnOf(cell));
+        }
+        for(int k=0; k<outcome.arrayOrbsToDrop.size(); k++){
+            int cell = outcome.arrayOrbsToDrop.get(k);
+            board.clear(board.rowOf(cell), board.columnOf(cell));
+        }
+    }
+
+    // Lists the cells where incoming transfer orbs may be placed, in row-major order: the board's frontier (see
+    // OrbBoard.isOnFrontier), on the columns used by row 0's parity, minus the claimed cells. Every machine builds the
+    // same list, so they all make the same random picks from it.
+    // note: spots is scratch space with the layout of the board (see OrbBoard.newPlane).
+    public static void findTransferSpots(OrbBoard board, IntList claimedCells, long[] spots, IntList openSpots){
+        int offset = board.getRowParity(0);
+        board.copyFrontier(spots);
+        for(int k=0; k<claimedCells.size(); k++){
+            int cell = claimedCells.get(k);
+            board.clearBit(spots, board.rowOf(cell), board.columnOf(cell));
+        }
+
+        int wordsPerRow = board.getWordsPerRow();
+        openSpots.clear();
+        for(int i=0; i<ARRAY_HEIGHT; i++){
+            long parityMask = ((offset+i)%2==0) ? EVEN_COLUMNS : ~EVEN_COLUMNS;
+            for(int w=0; w<wordsPerRow; w++){
+                long bits = spots[i*wordsPerRow + w] & parityMask;
+                while(bits!=0){
+                    openSpots.add(board.cellOf(i, 64*w + Long.numberOfTrailingZeros(bits)));
+                    bits &= bits-1;
+                }
+            }
+        }
+    }
+
+    // Picks a color ordinal at random, weighted by the number of orbs of each color in the orbArray rows. Returns
+    // EMPTY_BOARD_AMMUNITION if there are no orbs there. The board keeps the counts up to date, so nothing is scanned.
+    public static int pickAmmunitionColor(OrbBoard board, double randomNumber){
+        // Each count is read exactly once, in case the board is being changed by another thread:
+        int[] counts = colorCounts.get();
+        int total = 0;
+        for(int c=0; c<counts.length; c++){
+            counts[c] = board.getArrayColorCount(c);
+            total += counts[c];
+        }
+
+        // Walk the cumulative distribution:
+        double target = randomNumber*total;
+        int cumulativeSum = 0;
+        for(int c=0; c<counts.length; c++){
+            cumulativeSum += counts[c];
+            if(counts[c]>0 && target<cumulativeSum) return c;
+        }
+        return EMPTY_BOARD_AMMUNITION;
+    }
+
+    // The speed of a shooting orb of the given color ordinal, in pixels per second.
+    public static double getOrbSpeed(int colorOrdinal){
+        return ORB_SPEEDS[colorOrdinal];
+    }
+
+    // The column parity for a new row of orbs, decided before the existing rows are moved down: the opposite of row 1's
+    // parity, or 0 if row 1 is empty.
+    public static int getNewRowParity(OrbBoard board){
+        if(board.isRowEmpty(1)) return 0;
+        return 1-board.getRowParity(1);
+    }
+
+    // If there are no orbs connected to the ceiling, then the team has finished the puzzle.
+    public static boolean isPuzzleCleared(OrbBoard board){
+        return board.isRowEmpty(0);
+    }
+
+    // A team loses if any orbs are left below the line of death at the end of a frame.
+    public static boolean isDefeated(OrbBoard board){
+        return !board.isRowEmpty(ARRAY_HEIGHT);
+    }
+}
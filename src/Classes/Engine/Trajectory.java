@@ -0,0 +1,103 @@
+package Classes.Engine;
+
+import java.util.Arrays;
+
+/**
+ * The path of a single shooting orb across an empty board: a list of straight segments, one per wall bounce, ending at
+ * the ceiling or at the end of the simulated time. The path only depends on where the orb is fired from, its angle and
+ * speed, and the width of the PlayPanel, so the bots compute it once per angle and reuse it every time they think (see
+ * Simulation.getTrajectory). Simulation.simulateShot then only has to search the board along each segment.
+ *
+ * Each segment records the state of the orb at its start, exactly as Simulation.advanceShootingOrbs would have it, and
+ * the time until the wall or ceiling at its end.
+ */
+public class Trajectory {
+    // The shot that the trajectory was traced for:
+    private final double x;
+    private final double y;
+    private final double angle; // radians
+    private final double speed;
+    private final double frameTime; // The amount of time simulated.
+
+    private int numSegments = 0;
+    private double[] segmentX = new double[4];
+    private double[] segmentY = new double[4];
+    private double[] segmentAngle = new double[4];
+    private double[] startTime = new double[4]; // seconds since the orb was fired.
+    private double[] duration = new double[4]; // seconds until the wall or ceiling at the end of the segment (or the end of the simulated time).
+
+    Trajectory(double x, double y, double angle, double speed, double frameTime){
+        this.x = x;
+        this.y = y;
+        this.angle = angle;
+        this.speed = speed;
+        this.frameTime = frameTime;
+    }
+
+    void addSegment(double xPos, double yPos, double pathAngle, double segmentStartTime, double segmentDuration){
+        if(numSegments==segmentX.length){
+            int capacity = 2*numSegments;
+            segmentX = Arrays.copyOf(segmentX, capacity);
+            segmentY = Arrays.copyOf(segmentY, capacity);
+            segmentAngle = Arrays.copyOf(segmentAngle, capacity);
+            startTime = Arrays.copyOf(startTime, capacity);
+            duration = Arrays.copyOf(duration, capacity);
+        }
+        segmentX[numSegments] = xPos;
+        segmentY[numSegments] = yPos;
+        segmentAngle[numSegments] = pathAngle;
+        startTime[numSegments] = segmentStartTime;
+        duration[numSegments] = segmentDuration;
+        numSegments++;
+    }
+
+    // Returns true if this trajectory was traced for the given shot.
+    public boolean matches(double x, double y, double angle, double speed, double frameTime){
+        return this.x==x && this.y==y && this.angle==angle && this.speed==speed && this.frameTime==frameTime;
+    }
+
+    // A hash of the given shot, for looking up its trajectory.
+    static long hash(double x, double y, double angle, double speed, double frameTime){
+        long hash = Double.doubleToLongBits(x);
+        hash = 31*hash + Double.doubleToLongBits(y);
+        hash = 31*hash + Double.doubleToLongBits(angle);
+        hash = 31*hash + Double.doubleToLongBits(speed);
+        hash = 31*hash + Double.doubleToLongBits(frameTime);
+        return hash;
+    }
+
+    /* Getters */
+    public double getX(){
+        return x;
+    }
+    public double getY(){
+        return y;
+    }
+    public double getAngle(){
+        return angle;
+    }
+    public double getSpeed(){
+        return speed;
+    }
+    public double getFrameTime(){
+        return frameTime;
+    }
+    public int getNumSegments(){
+        return numSegments;
+    }
+    public double getSegmentX(int segment){
+        return segmentX[segment];
+    }
+    public double getSegmentY(int segment){
+        return segmentY[segment];
+    }
+    public double getSegmentAngle(int segment){
+        return segmentAngle[segment];
+    }
+    public double getStartTime(int segment){
+        return startTime[segment];
+    }
+    public double getDuration(int segment){
+        return duration[segment];
+    }
+}
@@ -4,6 +4,10 @@ import Classes.Animation.OrbColor;
 import Classes.Audio.Music;
 import Classes.Audio.SoundEffect;
 import Classes.Audio.SoundManager;
+import Classes.Engine.GameModel;
+import Classes.Engine.PanelModel;
+import Classes.Engine.PanelModel.TeamState;
+import Classes.Engine.Simulation;
 import Classes.Images.ButtonType;
 import Classes.Images.CannonType;
 import Classes.Images.DrawingName;
@@ -41,13 +45,13 @@ import static javafx.scene.layout.AnchorPane.setRightAnchor;
  * Created by Jonathan Roop on 7/22/2017.
  */
 public class GameScene extends Scene {
-    static final double GRAVITY = 1000.0; // pixels per second squared
     private final int SEED = 14; // todo: temporary seed value passed to each PlayPanel
 
     // Fields related to layout:
     private StackPane rootNode;
 
     private Map<Integer, PlayPanel> playPanelMap = new HashMap<>(); // For quick access to a PlayPanel using the team number
+    private GameModel gameModel; // The rules between the PlayPanels' models, in the order of playPanelMap.values().
     private ChatBox chatBox;
     private Player localPlayer;
     private List<Player> players;
@@ -69,7 +73,7 @@ public class GameScene extends Scene {
     // Variables related to animation and timing:
     private AnimationTimer animationTimer;
     private boolean initializing = true;
-    public static final int DATA_FRAME_RATE = 24;
+    public static final int DATA_FRAME_RATE = Simulation.DATA_FRAME_RATE;
     private static final int VISUAL_FRAME_RATE = 60;
     private long nextDataUpdateInstance = 0; // Time at which The next animation frame will be computed.
     private long nextAnimationFrameInstance = 0; // Time at which all visuals will be repainted(nanoseconds)
@@ -94,6 +98,8 @@ public class GameScene extends Scene {
     private SendPacketsTasks sendPacketsTasks = new SendPacketsTasks();
     private ReportingTasks reportingTasks = new ReportingTasks();
     private ExecutorService workerThread = Executors.newSingleThreadExecutor();
+    private ExecutorService playPanelThreads; // The PlayPanels are ticked in parallel on this pool. Created once the number of PlayPanels is known.
+    private List<PlayPanelTickTask> playPanelTickTasks = new ArrayList<>(); // One per PlayPanel, in the order of playPanelMap.values().
 
     // a negative value for puzzleGroupIndex indicates that a RANDOM puzzle with -puzzleGroupIndex rows should be created.
     // todo: don't use indices for the puzzles. Instead, pass a PuzzleSet enum, and have the PuzzleSet store pointers to the various puzzles. Include special enums for random puzzles.
@@ -136,6 +142,12 @@ public class GameScene extends Scene {
             playPanelMap.put(team,newPlayPanel);
         }
 
+        for(PlayPanel playPanel : playPanelMap.values()) playPanelTickTasks.add(new PlayPanelTickTask(playPanel));
+        List<PanelModel> panelModels = new ArrayList<>();
+        for(PlayPanel playPanel : playPanelMap.values()) panelModels.add(playPanel.getModel());
+        gameModel = new GameModel(panelModels);
+        playPanelThreads = new ForkJoinPool(Math.max(1, Math.min(playPanelMap.size(), Runtime.getRuntime().availableProcessors())));
+
         // Add the PlayPanels to the A ScrollableView on the Scene:
         ScrollableView<PlayPanel> playPanels = new ScrollableView<>(locationType.getBackground().getImageView(), locationType.getMidground().getImageView(), locationType.getSeparator());
         playPanels.addItems(this.playPanelMap.values());
@@ -302,37 +314,26 @@ public class GameScene extends Scene {
     }
 
     private void checkForVictory_Model(){
-        // Todo: what if 2 players declare victory at the exact same time?
-        // check to see whether anybody's won a quick victory by clearing their PlayPanel:
+        // A team is out of the game once none of its players are left (they may also have been dropped, or disconnected):
         for(PlayPanel playPanel : playPanelMap.values()){
-            if(playPanel.getTeamState().getData()==PlayPanel.TeamState.VICTORIOUS){
-                // Todo: host should check whether it's actually true.
-                startVictoryPause_Model(playPanel.getTeam());
-                System.out.println("Hey, somebody won a quick victory!");
-            }
-        }
-
-        // In competitive multiplayer (or Vs Computer) games, check to see whether there's only 1 live team left
-        if(playPanelMap.values().size()>1){
-            Set<Integer> liveTeams = new HashSet<>();
-            for(Player player : players){
+            boolean eliminated = true;
+            for(Player player : playPanel.getPlayerList()){
                 Player.PlayerStatus playerPlayerStatus = player.getPlayerStatus().getData();
-                if(playerPlayerStatus != Player.PlayerStatus.DEFEATED && playerPlayerStatus != Player.PlayerStatus.DISCONNECTED) liveTeams.add(player.getTeam().getData());
-            }
-            if(liveTeams.size()==1){
-                System.out.println("There's only 1 team left. They've won the game!");
-                startVictoryPause_Model(liveTeams.iterator().next());
-            }
-
-            // Todo: in the offhand chance that everyone died at the exact same time, declare a tie or pick a winner at random from those who just died this turn (check the isDefeatedChanged flag).
-            else if(liveTeams.size() == 0){
-                System.out.println("WHOA!!! A tie!!!!");
+                if(playerPlayerStatus != Player.PlayerStatus.DEFEATED && playerPlayerStatus != Player.PlayerStatus.DISCONNECTED) eliminated = false;
             }
+            playPanel.getModel().setEliminated(eliminated);
         }
 
-        // In puzzle games, check to see whether the only existing team has lost:
-        else{
-            if(players.get(0).getPlayerStatus().getData()== Player.PlayerStatus.DEFEATED) startVictoryPause_Model(-1);
+        // Todo: host should check whether a quick victory is actually true.
+        int result = gameModel.checkForVictory();
+        if(result==GameModel.TIE){
+            System.out.println("WHOA!!! A tie!!!!");
+        }
+        else if(result!=GameModel.NO_RESULT){
+            if(result==GameModel.NOBODY_WON) System.out.println("The puzzle has been failed.");
+            else if(playPanelMap.get(result).getModel().getState()==TeamState.VICTORIOUS) System.out.println("Hey, somebody won a quick victory!");
+            else System.out.println("There's only 1 team left. They've won the game!");
+            startVictoryPause_Model(result);
         }
 
         // If someone has won, handle the delay before the victory graphics are actually displayed:
@@ -359,19 +360,28 @@ public class GameScene extends Scene {
             if(!pause.getData() && isHost) processBots();
 
             if(!pause.getData()){
-                // update each PlayPanel:
-                for(PlayPanel playPanel: playPanelMap.values()){
-                    long time = System.nanoTime();
-                    PlayPanel.Outcome outcome = playPanel.tick(isHost);
+                // update each PlayPanel. The PlayPanels don't share any game state until the transfer phase below, so
+                // they are ticked in parallel. invokeAll() doesn't return until every one of them is done:
+                if(playPanelTickTasks.size()==1) playPanelTickTasks.get(0).call();
+                else{
+                    try{
+                        for(Future<Void> future : playPanelThreads.invokeAll(playPanelTickTasks)) future.get();
+                    } catch(InterruptedException | ExecutionException e){ // An ExecutionException means that PlayPanel.tick() threw an exception.
+                        e.printStackTrace();
+                    }
+                }
+
+                // Collect the results in the same order as always, so that every machine sees the same thing:
+                for(PlayPanelTickTask task : playPanelTickTasks){
                     synchronized (connectionManager.getSynchronizer()){ // The applicationThread plays the sounds and clears this list.
-                        soundEffectsToPlay.addAll(outcome.soundEffectsToPlay);
+                        soundEffectsToPlay.addAll(task.soundEffects);
                     }
-                    time = System.nanoTime() - time;
                     playPanelTickTime[0]++;
-                    playPanelTickTime[1]+=time;
-                    if(time < playPanelTickTime[2]) playPanelTickTime[2] = time;
-                    if(time > playPanelTickTime[3]) playPanelTickTime[3] = time;
+                    playPanelTickTime[1]+=task.time;
+                    if(task.time < playPanelTickTime[2]) playPanelTickTime[2] = task.time;
+                    if(task.time > playPanelTickTime[3]) playPanelTickTime[3] = task.time;
                 }
+
                 // process inter-PlayPanel events (transferring orbs and determining victory/defeat):
                 tick();
             }
@@ -382,6 +392,28 @@ public class GameScene extends Scene {
         }
     }
 
+    // Ticks a single PlayPanel. The sound effects are copied right away, because the PlayPanel reuses its set on the
+    // next tick.
+    private class PlayPanelTickTask implements Callable<Void>{
+        private final PlayPanel playPanel;
+        private final Set<SoundEffect> soundEffects = EnumSet.noneOf(SoundEffect.class);
+        private long time; // nanoseconds taken by the last tick.
+
+        PlayPanelTickTask(PlayPanel playPanel){
+            this.playPanel = playPanel;
+        }
+
+        @Override
+        public Void call(){
+            long startTime = System.nanoTime();
+            Set<SoundEffect> playPanelSoundEffects = playPanel.tick(isHost);
+            soundEffects.clear();
+            soundEffects.addAll(playPanelSoundEffects);
+            time = System.nanoTime() - startTime;
+            return null;
+        }
+    }
+
     private class SendPacketsTasks implements Callable<Void>{
         @Override
         public Void call(){
@@ -571,14 +603,9 @@ public class GameScene extends Scene {
         // Stop the other threads that are running:
         animationTimer.stop();
         connectionManager.cleanUp(); // stops the receiver and sender workers in the connectionManager
-        for(PlayPanel playPanel : playPanelMap.values()){
-            for(Player player : playPanel.getPlayerList()){
-                if(player instanceof BotPlayer){
-                    ((BotPlayer) player).cleanUp(); // shuts down the BotPlayer's thread pool
-                }
-            }
-        }
+        BotPlayer.shutDownThreadPool();
         workerThread.shutdown();
+        playPanelThreads.shutdown();
     }
 
     // Overlays the Scene with a transparent black rectangle when the game is paused:
@@ -663,21 +690,10 @@ public class GameScene extends Scene {
 
     // Called once after every PlayPanel has tick()'ed. This method processes inter-PlayPanel and game-wide events.
     private void tick(){
-        // transfer the transferOutOrbs.
-        for(PlayPanel fromPlayPanel : playPanelMap.values()){
-            List<Orb> transferOutOrbs = fromPlayPanel.getTransferOutOrbs();
-            if(!transferOutOrbs.isEmpty()){
-                for(PlayPanel toPlayPanel : playPanelMap.values()){
-                    if(fromPlayPanel!=toPlayPanel){
-                        SynchronizedList<Orb> transferInOrbs = toPlayPanel.getTransferInOrbs();
-                        Random randomTransferOrbGenerator = toPlayPanel.getRandomTransferOrbGenerator();
-                        Orb[][] orbArray = toPlayPanel.getOrbArray().getData();
-                        Orb[] deathOrbs = toPlayPanel.getDeathOrbs();
-                        toPlayPanel.transferOrbs(transferOutOrbs,transferInOrbs.getData(),randomTransferOrbGenerator,orbArray,deathOrbs);
-                    }
-                }
-            }
-            transferOutOrbs.clear();
+        // transfer the orbs that each team has sent out, and show them on the receiving PlayPanels:
+        gameModel.transferOrbs();
+        for(PlayPanel playPanel : playPanelMap.values()){
+            playPanel.receiveTransferOrbs();
         }
     }
 
@@ -701,7 +717,7 @@ public class GameScene extends Scene {
 
         // clear any outstanding shooting orbs:
         for(PlayPanel playPanel: playPanelMap.values()){
-            playPanel.getShootingOrbs().clear();
+            playPanel.clearShootingOrbs();
         }
 
         victoryPauseStarted = true;
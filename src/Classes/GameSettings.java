@@ -5,6 +5,9 @@ public class GameSettings {
     public static final long HIGHRES_MEMORY_CUTOFF = 402653184; // 348 megabytes (3*2^7) * 2^20
     public static final long LOWRES_MEMORY_CUTOFF = 268435456; // 256 megabytes (2^8 * 2^20)
     static ImageResolution imageResolution;
+    static boolean deterministicPhysics = false; // If true, PlayPanels use fixed-point physics that gives bit-identical results on every machine. Read when a PlayPanel is created.
+    static boolean shooterCollisions = false; // If true, shooting orbs bounce off each other. Read when a PlayPanel is created.
+    static boolean batchedCollisionTests = false; // If true, shots are tested against a whole row of array orbs at once, which the JIT can vectorize. The results are identical either way. Read when a PlayPanel is created.
 
     public static void setImageResolution(ImageResolution resolution){
         imageResolution = resolution;
@@ -14,6 +17,30 @@ public class GameSettings {
         return imageResolution;
     }
 
+    public static void setDeterministicPhysics(boolean deterministic){
+        deterministicPhysics = deterministic;
+    }
+
+    public static boolean isDeterministicPhysics(){
+        return deterministicPhysics;
+    }
+
+    public static void setShooterCollisions(boolean enabled){
+        shooterCollisions = enabled;
+    }
+
+    public static boolean isShooterCollisions(){
+        return shooterCollisions;
+    }
+
+    public static void setBatchedCollisionTests(boolean batched){
+        batchedCollisionTests = batched;
+    }
+
+    public static boolean isBatchedCollisionTests(){
+        return batchedCollisionTests;
+    }
+
     public enum ImageResolution {
         LOW, HIGH
     }
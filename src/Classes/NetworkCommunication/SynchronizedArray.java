@@ -11,6 +11,12 @@ public class SynchronizedArray<T extends Comparable<T> & Serializable> extends S
         setTo(data);
     }
 
+    public SynchronizedArray(String name, T[][] data, Setable<T[][]> setInterface, Precedence precedence, long parentID, Synchronizer synchronizer){
+        super(name, parentID, synchronizer, precedence, 24);
+        registerExternalSetter(setInterface);
+        setTo(data);
+    }
+
     public int compareTo(SynchronizedData<T[][]> other){
         if(Arrays.deepEquals(data,other.data)) return 0;
         else return -1;
@@ -31,6 +37,17 @@ public class SynchronizedArray<T extends Comparable<T> & Serializable> extends S
         }
     }
 
+    // Moves every row down by one index, and the last row becomes the first. Only the row references are moved, so
+    // this takes time proportional to the number of rows. Note: the external setter is not called. The caller is
+    // expected to fill in the new first row.
+    public void setRotateDown(){
+        synchronized (synchronizer){
+            T[] lastRow = data[data.length-1];
+            System.arraycopy(data, 0, data, 1, data.length-1);
+            data[0] = lastRow;
+        }
+    }
+
     @Override
     // note: newArray must have the same dimensions as data.
     public void setTo(T[][] newArray){
@@ -2,6 +2,7 @@ package Classes;
 
 import Classes.Animation.*;
 import Classes.Audio.SoundEffect;
+import Classes.Engine.Simulation;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.ArcType;
@@ -13,7 +14,7 @@ import static Classes.GameScene.DATA_FRAME_RATE;
 import static Classes.PlayPanel.ORB_RADIUS;
 
 public class Orb extends PointInt implements Serializable, Comparable<Orb>{
-    private static final double TIME_TO_TRANSFER = 3; // how many seconds it takes for a transfer orb to materialize.
+    private static final double TIME_TO_TRANSFER = Simulation.TIME_TO_TRANSFER; // how many seconds it takes for a transfer orb to materialize.
     private static final double TIME_TO_THUNDER = 1; // how many seconds it takes for a dropped orb to thunder.
     private static final double ELECTRIFICATION_PROBABILITY = .004;
 
@@ -159,6 +160,9 @@ public class Orb extends PointInt implements Serializable, Comparable<Orb>{
     public int getDistinguishingInt(){
         return distinguishingInt;
     }
+    public int getCurrentFrame(){
+        return currentFrame;
+    }
 
     // called 24 times per second.
     // A return of "true" means that an animation sequence has ended.
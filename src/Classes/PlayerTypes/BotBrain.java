@@ -0,0 +1,654 @@
+package Classes.PlayerTypes;
+
+import Classes.Engine.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static Classes.Engine.Simulation.CANNON_Y_POS;
+import static Classes.Engine.Simulation.SHOTS_BETWEEN_DROPS;
+
+/**
+ * The targeting logic of a bot: given a Thought (a copy of what the bot can see when it starts thinking), it picks the
+ * angle to shoot at. BotPlayer takes care of everything else (when to think, and moving and firing the cannon).
+ *
+ * Colors are handled by OrbColor ordinal, as they are in the engine, so this class doesn't depend on the OrbColor
+ * enum or anything else that needs the JavaFX toolkit. That lets the bots be run without a UI (see BotTournament).
+ */
+public class BotBrain {
+
+    private static final double MIN_ANGLE = -135.0; // The range of angles that the bot considers (degrees).
+    private static final double MAX_ANGLE = -40.0;
+    static final int NO_COLOR = -1; // For a Thought with no next ammunition orb.
+    static final long NO_DEADLINE = Long.MAX_VALUE; // For a Thought that must come out the same every time (see BotTournament). The search is then limited only by the difficulty's angle budget, lookahead width and playouts.
+
+    private final Difficulty difficulty;
+    private final Simulation simulation;
+    private final Random offsetGenerator;
+
+    // Transposition cache: the scored angles of the positions that the bot has analyzed most recently. Bots often think
+    // about the same position more than once (while waiting for a shot to land, for example, or after a miss), and a
+    // repeated position then costs a hash lookup. Access order is kept, so the least recently used position is evicted.
+    private static final int MAX_TRANSPOSITIONS = 64;
+    private final Map<Position,List<PossibleChoice>> transpositions = new LinkedHashMap<Position,List<PossibleChoice>>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Position,List<PossibleChoice>> eldest){
+            return size() > MAX_TRANSPOSITIONS;
+        }
+    };
+
+    // Multithreading
+    private static ForkJoinPool threadPool; // Shared by all the bots, and sized to the number of cores. Created when first needed and shut down by GameScene.cleanUp().
+    private static final int ANGLES_PER_TASK = 4; // The angles are split into tasks this small, so that idle threads can steal work from busy ones (including the work of other bots).
+
+    public BotBrain(Difficulty difficulty, Simulation simulation, long seed){
+        this.difficulty = difficulty;
+        this.simulation = simulation;
+        offsetGenerator = new Random(seed);
+    }
+
+    // Runs on the threadPool. It only touches the copies in the Thought (and the Simulation, which is thread-safe),
+    // so the game can carry on while it runs. Sets thought.target (a positive value means that the bot should wait)
+    // and returns the thought.
+    Thought retarget(Thought thought){
+        long time = System.nanoTime();
+        thought.target = chooseAngle(thought);
+        thought.computationTime = System.nanoTime() - time;
+        return thought;
+    }
+
+    private double chooseAngle(Thought thought){
+        OrbBoard boardCopy = thought.board;
+        ShootingOrbBuffer shootingOrbsCopy = thought.shootingOrbs;
+
+        // Advance all existing shooter orbs, one at a time in order.
+        // Note: They're done one at a time instead of all at once because a previously fired orb might supposed to
+        // be clearing the path for the next orb. If all the shooting orbs are computed simultaneously, this fact
+        // won't be simulated, and the 2nd shooting orb will get blocked in its simulation. This still isn't perfect
+        // (for example, a more recently-fired shot might actually reach its target before a previous shot) but should
+        // be pretty good.
+        ShootingOrbBuffer singletonShootingOrb = new ShootingOrbBuffer(1);
+        for(int slot=0; slot<shootingOrbsCopy.size(); slot++){
+            // Create a temporary shootingOrbs buffer that contains only one of the current shooting orbs:
+            singletonShootingOrb.clear();
+            singletonShootingOrb.add(shootingOrbsCopy.getX(slot), shootingOrbsCopy.getY(slot), shootingOrbsCopy.getAngle(slot),
+                    shootingOrbsCopy.getSpeed(slot), shootingOrbsCopy.getColorOrdinal(slot), shootingOrbsCopy.getId(slot));
+
+            // Determine the maximum time over which this shooting Orb could possibly travel:
+            double maxYDistance = shootingOrbsCopy.getY(slot); // it's actually a little less than this, but I want to overestimate a little anyways.
+            double maxXDistance = maxYDistance/Math.tan(Math.toRadians(shootingOrbsCopy.getAngle(slot)));
+            double maxDistanceSquared = Math.pow(maxXDistance, 2.0) + Math.pow(maxYDistance, 2.0);
+            double maxDistance = Math.sqrt(maxDistanceSquared);
+            double maxTime = maxDistance/shootingOrbsCopy.getSpeed(slot);
+
+            Outcome outcome = simulation.simulateOrbs(boardCopy, singletonShootingOrb, maxTime);
+            simulation.applyOutcome(boardCopy, outcome);
+        }
+
+        // Find the lowest occupied row on the array and save that value. This is used later in the assignScore method.
+        int lowestRow = boardCopy.getLowestOccupiedRow();
+
+        // If there were no Orbs in the orbArray, then return a positive angle to indicate that the bot should wait.
+        if(lowestRow == -1) return 1;
+
+        // ** Let's determine the outcome for a variety of shooting angles ** //
+
+        // If this position has been analyzed before, its scores are in the transposition cache:
+        Position position = new Position(boardCopy.getHash(), thought);
+        List<PossibleChoice> choices;
+        synchronized(transpositions){
+            choices = transpositions.get(position);
+        }
+        if(choices==null){
+            choices = searchAngles(thought, lowestRow);
+            if(choices!=null){
+                synchronized(transpositions){
+                    transpositions.put(position, choices);
+                }
+            }
+            else choices = thought.partialChoices;
+        }
+
+        // Neighboring angles with the same score form a run. When a bin is chosen, one of its runs is chosen:
+        int run = 0;
+        PossibleChoice previousChoice = null;
+        for(PossibleChoice choice : choices){
+            if(previousChoice!=null && choice.score!=previousChoice.score) run++;
+            choice.run = run;
+            previousChoice = choice;
+        }
+
+        // sort the possible choices by score, and choose one of the better ones (tempered by stupidity level):
+        LinkedList<OutcomeBin> choiceBins = binSort(choices);
+        int binChoice;
+        do{
+            binChoice = (int)Math.round(offsetGenerator.nextDouble()*difficulty.getStupidity());
+        } while(binChoice>=choiceBins.size());
+        OutcomeBin chosenBin = choiceBins.get(binChoice);
+
+        // If the bot is going for one of the best choices, it may look ahead to its next shot to decide which:
+        PossibleChoice lookaheadChoice = null;
+        if(binChoice==0){
+            if(difficulty.getPlayouts()>0) lookaheadChoice = playOut(choices, thought);
+            else lookaheadChoice = lookAhead(choices, thought);
+        }
+        PossibleChoice choice = (lookaheadChoice!=null) ? lookaheadChoice : chosenBin.selectChoice();
+        return choice.angle;
+    }
+
+    // Two-shot lookahead. The first shot's runs are ranked by score, and the best few (the beam, whose width depends on
+    // the difficulty) are looked into: the shot down the middle of the run is applied to a snapshot of the board, and
+    // the next ammunition orb is swept over the result. A run's combined score is its own score plus the best score of
+    // the second shot, and the middle of the run with the best combined score is returned. Runs that couldn't beat the
+    // best combined score even with a perfect second shot are skipped. Returns null if the difficulty doesn't look
+    // ahead, if there's no next orb, or if the time budget ran out before any run was looked into.
+    private PossibleChoice lookAhead(List<PossibleChoice> choices, Thought thought){
+        if(difficulty.getLookaheadWidth()==0 || thought.nextAmmunitionColor==NO_COLOR) return null;
+        long deadline = getLookaheadDeadline(thought);
+
+        // The candidates are the middles of the runs, best first:
+        List<PossibleChoice> candidates = new LinkedList<>();
+        for(List<PossibleChoice> run : splitIntoRuns(choices)) candidates.add(middlemostChoice(run));
+        candidates.sort(Comparator.comparingInt((PossibleChoice candidate) -> -candidate.score));
+
+        PossibleChoice bestChoice = null;
+        int bestCombinedScore = Integer.MIN_VALUE;
+        int beamWidth = 0;
+        for(PossibleChoice candidate : candidates){
+            if(beamWidth++ >= difficulty.getLookaheadWidth() || System.nanoTime()>=deadline) break;
+
+            // Take the first shot on a copy of the board:
+            OrbBoard afterFirstShot = thought.board.snapshot();
+            simulation.applyOutcome(afterFirstShot, simulateShotAt(candidate.angle, thought.ammunitionColor, thought));
+            int lowestRow = afterFirstShot.getLowestOccupiedRow();
+
+            // Prune the candidate if even the best possible second shot couldn't make it the best:
+            int bestSecondScore = maxPossibleScore(afterFirstShot);
+            if(candidate.score + bestSecondScore <= bestCombinedScore) continue;
+
+            // Sweep the second shot, from where the cannon will be pointing after the first. If the first shot clears
+            // the board, there's no better follow-up than that:
+            if(lowestRow != -1){
+                Thought secondThought = new Thought(afterFirstShot, null, thought.nextAmmunitionColor, thought.cannonX, candidate.angle, deadline);
+                List<Double> angles = new LinkedList<>();
+                for(double angle = MAX_ANGLE; angle>MIN_ANGLE; angle-=difficulty.getCoarseAngleIncrement()) angles.add(angle);
+                bestSecondScore = Integer.MIN_VALUE;
+                for(PossibleChoice secondChoice : simulateAngles(angles, secondThought, lowestRow)){
+                    bestSecondScore = Math.max(bestSecondScore, secondChoice.score);
+                }
+                if(bestSecondScore==Integer.MIN_VALUE) continue; // The simulation failed.
+            }
+
+            if(candidate.score + bestSecondScore > bestCombinedScore){
+                bestCombinedScore = candidate.score + bestSecondScore;
+                bestChoice = candidate;
+            }
+        }
+        return bestChoice;
+    }
+
+    // The lookahead has to finish within the difficulty's lookahead time, as well as by the thought's deadline. A
+    // thought with NO_DEADLINE isn't timed at all.
+    private long getLookaheadDeadline(Thought thought){
+        if(thought.deadline==NO_DEADLINE) return NO_DEADLINE;
+        return Math.min(thought.deadline, System.nanoTime() + (long)(difficulty.getLookaheadTime()*1000000000L));
+    }
+
+    // Monte Carlo lookahead. The best few runs of the first shot are candidates, as in lookAhead(), and each candidate
+    // is played out several times: the shot down the middle of the run is taken, and then a few more shots follow,
+    // with ammunition drawn the way PlayPanel.getNextShooterOrbEnum draws it and with new rows arriving as the shots
+    // run out (see Playout). The candidate with the best mean playout score is returned. All the playouts are run in
+    // parallel on the threadPool, and any that haven't started when the time budget runs out are skipped. Returns null
+    // if there's no time to play out anything.
+    private PossibleChoice playOut(List<PossibleChoice> choices, Thought thought){
+        long deadline = getLookaheadDeadline(thought);
+
+        // The candidates are the middles of the best runs:
+        List<PossibleChoice> candidates = new LinkedList<>();
+        for(List<PossibleChoice> run : splitIntoRuns(choices)) candidates.add(middlemostChoice(run));
+        candidates.sort(Comparator.comparingInt((PossibleChoice candidate) -> -candidate.score));
+        while(candidates.size()>difficulty.getLookaheadWidth()) candidates.remove(candidates.size()-1);
+
+        List<Playout> playouts = new LinkedList<>();
+        for(PossibleChoice candidate : candidates){
+            for(int k=0; k<difficulty.getPlayouts(); k++){
+                // The snapshots are taken here because snapshot() isn't safe to call from several threads at once:
+                playouts.add(new Playout(candidate, thought, thought.board.snapshot(), deadline, offsetGenerator.nextLong()));
+            }
+        }
+        try{
+            getThreadPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(playouts)));
+        } catch(RuntimeException e){ // Thrown if one of the playouts threw an exception during its execution.
+            e.printStackTrace();
+            return null;
+        }
+
+        // Pick the candidate with the best mean score:
+        PossibleChoice bestChoice = null;
+        double bestMeanScore = Double.NEGATIVE_INFINITY;
+        Iterator<Playout> playoutIterator = playouts.iterator();
+        for(PossibleChoice candidate : candidates){
+            int totalScore = 0;
+            int numPlayouts = 0;
+            for(int k=0; k<difficulty.getPlayouts(); k++){
+                Playout playout = playoutIterator.next();
+                if(!playout.finished) continue;
+                totalScore += playout.score;
+                numPlayouts++;
+            }
+            if(numPlayouts==0) continue;
+            double meanScore = (double)totalScore/numPlayouts;
+            if(meanScore>bestMeanScore){
+                bestMeanScore = meanScore;
+                bestChoice = candidate;
+            }
+        }
+        return bestChoice;
+    }
+
+    // One random continuation of the game after a candidate shot. Each follow-up shot is chosen greedily from a few
+    // random angles, which is much cheaper than a full search but still plays sensibly. The playout's score is the sum
+    // of the shots' scores (see assignScore), plus a large bonus if the board is cleared or a large penalty if the
+    // bot is defeated. Each playout has its own Random, so that the playouts don't contend for one.
+    private class Playout extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int ANGLES_PER_SHOT = 8;
+        private static final int CLEARED_BONUS = 100;
+        private static final int DEFEAT_PENALTY = 100;
+        final PossibleChoice candidate;
+        final Thought thought;
+        final OrbBoard board; // A snapshot of thought.board, which the playout plays on.
+        final long deadline;
+        final Random random;
+        int score;
+        boolean finished = false;
+
+        Playout(PossibleChoice candidate, Thought thought, OrbBoard board, long deadline, long seed){
+            this.candidate = candidate;
+            this.thought = thought;
+            this.board = board;
+            this.deadline = deadline;
+            random = new Random(seed);
+        }
+
+        @Override
+        protected void compute(){
+            if(System.nanoTime()>=deadline) return;
+            int shotsUntilNewRow = thought.shotsUntilNewRow;
+
+            // The candidate shot:
+            score = candidate.score;
+            simulation.applyOutcome(board, simulateShotAt(candidate.angle, thought.ammunitionColor, thought));
+            double cannonAngle = candidate.angle;
+
+            for(int shot=1; shot<difficulty.getPlayoutDepth(); shot++){
+                // New rows arrive as they would in PanelModel.tickRows():
+                if(--shotsUntilNewRow<=0){
+                    addRandomRow();
+                    shotsUntilNewRow += SHOTS_BETWEEN_DROPS*simulation.getNumPlayers();
+                }
+                if(Simulation.isDefeated(board)){
+                    score -= DEFEAT_PENALTY;
+                    break;
+                }
+                int lowestRow = board.getLowestOccupiedRow();
+                if(Simulation.isPuzzleCleared(board) || lowestRow==-1){
+                    score += CLEARED_BONUS;
+                    break;
+                }
+
+                // The next orb is known; the ones after it are drawn from the colors left on the board:
+                int orbColor;
+                if(shot==1 && thought.nextAmmunitionColor!=NO_COLOR) orbColor = thought.nextAmmunitionColor;
+                else orbColor = Simulation.pickAmmunitionColor(board, random.nextDouble());
+
+                // Take the best of a few random shots:
+                Thought shotThought = new Thought(board, null, orbColor, thought.cannonX, cannonAngle, deadline);
+                double bestAngle = 0;
+                int bestScore = Integer.MIN_VALUE;
+                for(int k=0; k<ANGLES_PER_SHOT; k++){
+                    double angle = MIN_ANGLE + (MAX_ANGLE-MIN_ANGLE)*random.nextDouble();
+                    if (Math.abs(angle + 90)<0.0001) angle+=0.001; // See HypotheticalOrbSimulator.
+                    int shotScore = assignScore(simulateShotAt(angle, orbColor, shotThought), orbColor, angle, shotThought, lowestRow);
+                    if(shotScore>bestScore){
+                        bestScore = shotScore;
+                        bestAngle = angle;
+                    }
+                }
+                score += bestScore;
+                simulation.applyOutcome(board, simulateShotAt(bestAngle, orbColor, shotThought));
+                cannonAngle = bestAngle;
+            }
+            finished = true;
+        }
+
+        // Moves the board down a row and fills the top row with random orbs, the way PlayPanel.addNewRow does.
+        private void addRandomRow(){
+            int newRowOffset = Simulation.getNewRowParity(board);
+            board.shiftDown();
+            for(int j=0; j<board.getWidth(); j++){
+                if(j%2==newRowOffset) board.set(0, j, random.nextInt(OrbBoard.NUM_COLORS));
+            }
+        }
+    }
+
+    // An upper bound on the score of any shot at the given board (see assignScore). At most every orb on the board
+    // (plus the shot itself) can be burst, dropped or transferred.
+    private int maxPossibleScore(OrbBoard board){
+        int numOrbs = board.getArrayOrbCount() + 1;
+        return 3*2*numOrbs + 2*numOrbs + 1;
+    }
+
+    // Splits the choices (sorted by angle, with their runs assigned) into their runs.
+    private List<List<PossibleChoice>> splitIntoRuns(List<PossibleChoice> choices){
+        List<List<PossibleChoice>> runs = new LinkedList<>();
+        List<PossibleChoice> currentRun = new LinkedList<>();
+        int previousRun = -1;
+        for(PossibleChoice choice : choices){
+            if(choice.run!=previousRun) {
+                currentRun = new LinkedList<>();
+                runs.add(currentRun);
+            }
+            currentRun.add(choice);
+            previousRun = choice.run;
+        }
+        return runs;
+    }
+
+    // Returns the choice closest to the middle of the run (sorted by angle). The angles are not evenly spaced, since the
+    // search was refined near the edges of the runs.
+    private PossibleChoice middlemostChoice(List<PossibleChoice> run){
+        double middleAngle = (run.get(0).angle + run.get(run.size()-1).angle)/2;
+        PossibleChoice middlemostChoice = run.get(0);
+        for(PossibleChoice choice : run){
+            if(Math.abs(choice.angle-middleAngle) < Math.abs(middlemostChoice.angle-middleAngle)) middlemostChoice = choice;
+        }
+        return middlemostChoice;
+    }
+
+    // Scores a range of shooting angles, and returns the choices sorted by angle. If the deadline passes before the
+    // search is finished, it stops refining and returns null. The choices it has so far are left in
+    // thought.partialChoices (they are good enough to play, but not worth caching).
+    private List<PossibleChoice> searchAngles(Thought thought, int lowestRow){
+        // First, a coarse sweep over the whole range:
+        List<Double> angles = new LinkedList<>();
+        for(double angle = MAX_ANGLE; angle>MIN_ANGLE; angle-=difficulty.getCoarseAngleIncrement()) angles.add(angle);
+        LinkedList<PossibleChoice> choices = new LinkedList<>(simulateAngles(angles, thought, lowestRow));
+
+        // Then refine the sweep where it matters, until the budget runs out, there's nothing left to refine, or the
+        // deadline passes:
+        choices.sort(Comparator.comparingDouble(PossibleChoice::getAngle));
+        int budget = difficulty.getAngleBudget() - choices.size();
+        while(budget>0){
+            if(System.nanoTime()>=thought.deadline){
+                thought.partialChoices = choices;
+                return null;
+            }
+            angles = findAnglesToRefine(choices, budget);
+            if(angles.isEmpty()) break;
+            choices.addAll(simulateAngles(angles, thought, lowestRow));
+            choices.sort(Comparator.comparingDouble(PossibleChoice::getAngle));
+            budget -= angles.size();
+        }
+        return choices;
+    }
+
+    // Simulates a shot at each of the given angles (degrees) on the shared threadPool.
+    private List<PossibleChoice> simulateAngles(List<Double> angles, Thought thought, int lowestRow){
+        double[] angleArray = new double[angles.size()];
+        int index = 0;
+        for(double angle : angles) angleArray[index++] = angle;
+        try{
+            return getThreadPool().invoke(new HypotheticalOrbSimulator(angleArray, 0, angleArray.length, thought, lowestRow));
+        } catch(RuntimeException e){ // Thrown if one of the tasks threw an exception during its execution.
+            e.printStackTrace();
+            return new LinkedList<>();
+        }
+    }
+
+    static synchronized ForkJoinPool getThreadPool(){
+        if(threadPool==null) threadPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        return threadPool;
+    }
+
+    // Shuts down the threads shared by the bots. A new pool is created if a bot needs one later.
+    public static synchronized void shutDownThreadPool(){
+        if(threadPool==null) return;
+        threadPool.shutdown();
+        threadPool = null;
+    }
+
+    // Picks the angles for the next round of the coarse-to-fine search, given the choices so far (sorted by angle). The
+    // gap between two neighboring choices is worth splitting if their scores differ (the best angle to aim for is
+    // the middle of a run of equal scores, so the edges of the runs should be found precisely) or if either of them
+    // has the best score found so far. Gaps near the best scores are split first, and gaps that are already narrower
+    // than the difficulty's finest angle increment are left alone. At most maxAngles angles are returned.
+    private List<Double> findAnglesToRefine(List<PossibleChoice> choices, int maxAngles){
+        int bestScore = Integer.MIN_VALUE;
+        for(PossibleChoice choice : choices) bestScore = Math.max(bestScore, choice.score);
+
+        List<PossibleChoice> gaps = new LinkedList<>(); // The angle of the gap's midpoint, and the higher of the 2 scores.
+        PossibleChoice previousChoice = null;
+        for(PossibleChoice choice : choices){
+            if(previousChoice!=null && choice.angle-previousChoice.angle >= 2*difficulty.getFinestAngleIncrement()){
+                if(choice.score!=previousChoice.score || choice.score==bestScore || previousChoice.score==bestScore){
+                    gaps.add(new PossibleChoice((choice.angle+previousChoice.angle)/2, Math.max(choice.score, previousChoice.score)));
+                }
+            }
+            previousChoice = choice;
+        }
+        gaps.sort(Comparator.comparingInt((PossibleChoice gap) -> -gap.score));
+
+        List<Double> angles = new LinkedList<>();
+        for(PossibleChoice gap : gaps){
+            if(angles.size()>=maxAngles) break;
+            angles.add(gap.angle);
+        }
+        return angles;
+    }
+
+    // Simulates the shots at angles[start] through angles[end-1]. Large ranges are split in half, and the halves are
+    // run as separate tasks.
+    private class HypotheticalOrbSimulator extends RecursiveTask<List<PossibleChoice>>{
+        private static final long serialVersionUID = 1L;
+        double[] angles;
+        int start;
+        int end;
+        Thought thought;
+        int lowestRow;
+
+        HypotheticalOrbSimulator(double[] angles, int start, int end, Thought thought, int lowestRow){
+            this.angles = angles;
+            this.start = start;
+            this.end = end;
+            this.thought = thought;
+            this.lowestRow = lowestRow;
+        }
+
+        @Override
+        protected List<PossibleChoice> compute(){
+            if(end-start > ANGLES_PER_TASK){
+                int middle = (start+end)/2;
+                HypotheticalOrbSimulator firstHalf = new HypotheticalOrbSimulator(angles, start, middle, thought, lowestRow);
+                HypotheticalOrbSimulator secondHalf = new HypotheticalOrbSimulator(angles, middle, end, thought, lowestRow);
+                firstHalf.fork();
+                List<PossibleChoice> choices = secondHalf.compute();
+                choices.addAll(0, firstHalf.join());
+                return choices;
+            }
+
+            LinkedList<PossibleChoice> choices = new LinkedList<>();
+            int currentShooterOrbColor = thought.ammunitionColor;
+            for(int k=start; k<end; k++){
+                double angle = angles[k];
+                if (Math.abs(angle + 90)<0.0001) angle+=0.001; // todo: if the angle is exactly -90, then weird things happen. Look into this and fix it.
+
+                // Simulate the outcome if we were to fire at this angle:
+                Outcome outcome = simulateShotAt(angle, currentShooterOrbColor, thought);
+
+                // Assign a score to the outcome:
+                int score = assignScore(outcome, currentShooterOrbColor, angle, thought, lowestRow);
+
+                // Add the angle and its score to the list of possible choices:
+                choices.add(new PossibleChoice(angle,score));
+            }
+            return choices;
+        }
+    }
+
+    // Simulates a shot of the given color at the given angle (degrees) on thought.board. Note: the Outcome belongs to
+    // the Simulation's buffers for this thread, and is only valid until the thread simulates another shot.
+    private Outcome simulateShotAt(double angle, int orbColor, Thought thought){
+        // Determine the maximum time over which the hypothetical Orb could possibly travel:
+        double maxYDistance = CANNON_Y_POS; // it's actually a little less than this, but I want to overestimate a little anyways.
+        double maxXDistance = maxYDistance/Math.tan(Math.toRadians(angle));
+        double maxDistanceSquared = Math.pow(maxXDistance, 2.0) + Math.pow(maxYDistance, 2.0);
+        double maxDistance = Math.sqrt(maxDistanceSquared);
+        double maxTime = maxDistance/Simulation.getOrbSpeed(orbColor);
+
+        // Simulate the shot. Its path across an empty board is the same every time the bot thinks, so it's cached by
+        // the Simulation; only the search for the orbs it hits has to be done for the current board:
+        Trajectory trajectory = simulation.getTrajectory(thought.cannonX, CANNON_Y_POS, Math.toRadians(angle), Simulation.getOrbSpeed(orbColor), maxTime);
+        return simulation.simulateShot(thought.board, trajectory, orbColor);
+    }
+
+    private LinkedList<OutcomeBin> binSort(List<PossibleChoice> choices){
+        Map<Integer,OutcomeBin> lookupMap = new HashMap<>();
+
+        // Sort the choices into bins:
+        OutcomeBin binChoices;
+        for(PossibleChoice choice : choices){
+            binChoices = lookupMap.get(choice.score);
+            if(binChoices==null) lookupMap.put(choice.score, new OutcomeBin(choice));
+            else binChoices.add(choice);
+        }
+
+        // Sort the list of bins:
+        LinkedList<OutcomeBin> bins = new LinkedList<>(lookupMap.values());
+        bins.sort(Comparator.comparingInt(OutcomeBin::getNegativeScore));
+        return bins;
+    }
+
+    // note: the hypothetical orb is in slot 0 of the outcome.
+    private int assignScore(Outcome outcome, int hypotheticalOrbColor, double angle, Thought thought, int lowestRow){
+        OrbBoard board = thought.board;
+        int score = 0;
+
+        // transferring Orbs is a very good thing:
+        score += 3*(outcome.getNumOrbsToTransfer() + outcome.arrayOrbsToDrop.size());
+
+        // bursting Orbs is also great:
+        score += 2*outcome.arrayOrbsToBurst.size();
+
+        // Otherwise, it is good if the orb is placed next to another Orb of the same color:
+        int matchesFound = 0;
+        int snapRow = -1;
+        int snapIndex = outcome.findSnapIndex(0);
+        if(snapIndex!=-1){
+            snapRow = outcome.snapI.get(snapIndex);
+            matchesFound = simulation.countNeighborsOfColor(outcome, snapRow, outcome.snapJ.get(snapIndex), hypotheticalOrbColor, board);
+        }
+        if(matchesFound==1) ++ score; // note: if matches > 1, the orbs have already been accounted for, in arrayOrbsToBurst.
+
+        // It is undesirable for the orb to hit the ceiling:
+        if (snapRow==0) score-=5;
+
+        // It looks nicer if the computer doesn't keep shooting in the same direction:
+        if((thought.cannonAngle<-90 && angle<-90) || (thought.cannonAngle>-90 && angle>-90)) --score;
+
+        // If the orb brings us closer to the death line, it is unfavorable
+        if(snapRow > lowestRow) score-=2;
+
+        return score;
+    }
+
+    // The inputs and the result of one run of retarget(). The inputs are copied on the tick thread, before retarget()
+    // starts, so that retarget() doesn't have to touch anything that the tick thread might be changing.
+    static class Thought {
+        final OrbBoard board;
+        final ShootingOrbBuffer shootingOrbs;
+        final int ammunitionColor; // OrbColor ordinal
+        final double cannonX;
+        final double cannonAngle; // degrees
+        final long deadline; // System.nanoTime() at which retarget() should stop refining its choice, or NO_DEADLINE.
+        int nextAmmunitionColor = NO_COLOR; // The orb after the current one, for the lookahead.
+        int shotsUntilNewRow; // For the playouts.
+        List<PossibleChoice> partialChoices; // Set by searchAngles() if the deadline cut it short.
+        double target;
+        long computationTime; // nanoseconds
+        Thought(OrbBoard board, ShootingOrbBuffer shootingOrbs, int ammunitionColor, double cannonX, double cannonAngle, long deadline){
+            this.board = board;
+            this.shootingOrbs = shootingOrbs;
+            this.ammunitionColor = ammunitionColor;
+            this.cannonX = cannonX;
+            this.cannonAngle = cannonAngle;
+            this.deadline = deadline;
+        }
+    }
+
+    // The key of the transposition cache: everything that the scores of the angles depend on. The board is identified
+    // by its Zobrist hash (after the shots that were already in flight have been simulated). The cannon's angle only
+    // matters through the side of the vertical it's on (see assignScore).
+    private static class Position {
+        final long boardHash;
+        final int ammunitionColor;
+        final double cannonX;
+        final int cannonSide;
+        Position(long boardHash, Thought thought){
+            this.boardHash = boardHash;
+            ammunitionColor = thought.ammunitionColor;
+            cannonX = thought.cannonX;
+            cannonSide = (int)Math.signum(thought.cannonAngle + 90);
+        }
+        @Override
+        public boolean equals(Object other){
+            if(!(other instanceof Position)) return false;
+            Position otherPosition = (Position) other;
+            return boardHash==otherPosition.boardHash && ammunitionColor==otherPosition.ammunitionColor
+                    && cannonX==otherPosition.cannonX && cannonSide==otherPosition.cannonSide;
+        }
+        @Override
+        public int hashCode(){
+            return Long.hashCode(boardHash) + 31*(ammunitionColor + 31*(Double.hashCode(cannonX) + 31*cannonSide));
+        }
+    }
+
+    private class PossibleChoice {
+        double angle;
+        int score;
+        int run; // Neighboring choices with the same score share a run. Set once all the angles have been simulated.
+        PossibleChoice(double angle, int score){
+            this.angle = angle;
+            this.score = score;
+        }
+        double getAngle(){
+            return angle;
+        }
+    }
+
+    private class OutcomeBin{
+        List<PossibleChoice> binChoices = new LinkedList<>();
+        OutcomeBin(PossibleChoice choice){
+            add(choice);
+        }
+        void add(PossibleChoice possibleChoice){
+            binChoices.add(possibleChoice);
+        }
+        // for sorting in reverse
+        int getNegativeScore(){
+            return -binChoices.get(0).score;
+        }
+
+        PossibleChoice selectChoice(){
+            // First, sort the choices by angle:
+            binChoices.sort(Comparator.comparingDouble(PossibleChoice::getAngle));
+
+            // Now put the choices into bins, based on their runs:
+            List<List<PossibleChoice>> bins = splitIntoRuns(binChoices);
+
+            // Pick one of the bins at random and then pick the choice closest to its middle:
+            List<PossibleChoice> chosenBin = bins.get(offsetGenerator.nextInt(bins.size()));
+            return middlemostChoice(chosenBin);
+        }
+    }
+}
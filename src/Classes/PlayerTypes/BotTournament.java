@@ -0,0 +1,221 @@
+package Classes.PlayerTypes;
+
+import Classes.Engine.*;
+import Classes.Engine.PanelModel.TeamState;
+import Classes.GameSettings;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static Classes.Engine.Simulation.CANNON_Y_POS;
+import static Classes.Engine.Simulation.DATA_FRAME_RATE;
+import static Classes.Engine.Simulation.ORB_RADIUS;
+import static Classes.Engine.Simulation.PLAYPANEL_WIDTH_PER_PLAYER;
+import static Classes.Engine.Simulation.SHOTS_BETWEEN_DROPS;
+
+/**
+ * Plays complete VS matches between bots without a UI, as fast as the machine allows, and reports how each difficulty
+ * fared. Useful for tuning the Difficulty settings and for measuring the engine's throughput. Usage:
+ *    BotTournament <matches> <threads> <difficulty> <difficulty> [<difficulty>...] [rows=<n>] [seed=<n>]
+ * For example, "BotTournament 100 4 HARD EXPERT" plays 100 matches of HARD against EXPERT, 4 at a time.
+ *
+ * Each team is a single bot on its own board. The rules are the ones that PlayPanel and GameScene use: each board is a
+ * PanelModel and the match is a GameModel, and every frame goes in the same order as GameScene's: the bots act, then
+ * every board is ticked, then the orbs are transferred and victory is checked. Nothing that needs the JavaFX toolkit
+ * is touched (no OrbColor, Orb, Player or PlayPanel instances). The bots' timing (thinking, aiming and firing) is
+ * counted in frames, just like a BotPlayer's, but the frames are not paced in real time. Every random choice follows
+ * from the seed, and the bots think without a time limit (only the difficulty's angle budget, lookahead width and
+ * playouts limit them), so a tournament with a given seed always comes out the same, however fast the machine is.
+ */
+public class BotTournament {
+
+    private static final int MAX_FRAMES = 20*60*DATA_FRAME_RATE; // A match that lasts longer than 20 minutes of game time is called a draw.
+    private static final int DEFAULT_ROWS = 5; // The number of rows in the random puzzle.
+
+    public static void main(String[] args){
+        int numMatches;
+        int numThreads;
+        List<Difficulty> difficulties = new LinkedList<>();
+        int rows = DEFAULT_ROWS;
+        int seed = (int)System.nanoTime();
+        try{
+            numMatches = Integer.parseInt(args[0]);
+            numThreads = Integer.parseInt(args[1]);
+            for(int k=2; k<args.length; k++){
+                if(args[k].startsWith("rows=")) rows = Integer.parseInt(args[k].substring(5));
+                else if(args[k].startsWith("seed=")) seed = Integer.parseInt(args[k].substring(5));
+                else difficulties.add(Difficulty.valueOf(args[k].toUpperCase()));
+            }
+            if(numMatches<1 || numThreads<1 || difficulties.size()<2) throw new IllegalArgumentException();
+        } catch(RuntimeException e){ // Missing or unparseable arguments
+            System.err.println("Usage: BotTournament <matches> <threads> <difficulty> <difficulty> [<difficulty>...] [rows=<n>] [seed=<n>]");
+            System.err.println("   difficulties: " + Arrays.toString(Difficulty.values()));
+            return;
+        }
+
+        System.out.println("Playing " + numMatches + " matches of " + difficulties + " on " + numThreads + " threads (rows=" + rows + ", seed=" + seed + ")...");
+        long startTime = System.nanoTime();
+        ExecutorService matchThreads = Executors.newFixedThreadPool(numThreads);
+        List<Future<Match>> futures = new LinkedList<>();
+        for(int m=0; m<numMatches; m++){
+            Match match = new Match(difficulties, rows, seed+m);
+            futures.add(matchThreads.submit(match));
+        }
+
+        // Collect the results:
+        Map<Difficulty,int[]> record = new EnumMap<>(Difficulty.class); // {matches played, matches won}
+        int draws = 0;
+        long totalFrames = 0;
+        long totalShots = 0;
+        for(Future<Match> future : futures){
+            Match match;
+            try{
+                match = future.get();
+            } catch(InterruptedException | ExecutionException e){
+                e.printStackTrace();
+                continue;
+            }
+            for(int k=0; k<match.teams.size(); k++){
+                Difficulty difficulty = match.teams.get(k).difficulty;
+                record.computeIfAbsent(difficulty, d -> new int[2]);
+                record.get(difficulty)[0]++;
+                if(match.winner==k) record.get(difficulty)[1]++;
+                totalShots += match.teams.get(k).shotsFired;
+            }
+            if(match.winner==-1) draws++;
+            totalFrames += match.frame;
+        }
+        double wallTime = (System.nanoTime() - startTime)/1000000000.0;
+        matchThreads.shutdown();
+        BotBrain.shutDownThreadPool();
+
+        // Report:
+        System.out.println();
+        for(Map.Entry<Difficulty,int[]> entry : record.entrySet()){
+            int[] played = entry.getValue();
+            System.out.printf("%-8s won %5d of %5d (%5.1f%%)%n", entry.getKey(), played[1], played[0], 100.0*played[1]/played[0]);
+        }
+        System.out.printf("draws/ties: %d%n", draws);
+        System.out.printf("average match length: %.0f frames (%.1f seconds of game time)%n", (double)totalFrames/numMatches, (double)totalFrames/numMatches/DATA_FRAME_RATE);
+        System.out.printf("wall time: %.1f seconds%n", wallTime);
+        System.out.printf("throughput: %.0f shots/second, %.0f ticks/second%n", totalShots/wallTime, totalFrames/wallTime);
+    }
+
+    // One match between a few bots. It is played from start to finish by a single thread (though the bots use the
+    // shared BotBrain threadPool while they think).
+    private static class Match implements Callable<Match>{
+        private final List<Team> teams = new LinkedList<>();
+        private final GameModel gameModel;
+        private int frame = 0;
+        private int winner = -1; // The index of the winning team, or -1 for a tie or a draw.
+
+        Match(List<Difficulty> difficulties, int rows, int seed){
+            List<PanelModel> panelModels = new LinkedList<>();
+            for(Difficulty difficulty : difficulties){
+                Team team = new Team(teams.size(), difficulty, rows, seed);
+                teams.add(team);
+                panelModels.add(team.model);
+            }
+            gameModel = new GameModel(panelModels);
+        }
+
+        @Override
+        public Match call(){
+            while(frame<MAX_FRAMES){
+                // As in GameScene's UpdateFrameTasks: the bots act first, then every board is ticked, then the orbs are
+                // transferred and victory is checked:
+                for(Team team : teams){
+                    if(team.model.getState()==TeamState.NORMAL) team.tickBot(); // See BotPlayer.tick(), which does nothing once the bot has won or lost.
+                }
+                for(Team team : teams) team.model.tick();
+                gameModel.transferOrbs();
+                frame++;
+
+                int result = gameModel.checkForVictory();
+                if(result!=GameModel.NO_RESULT){
+                    if(result>=0) winner = result;
+                    return this;
+                }
+            }
+            return this;
+        }
+    }
+
+    // A bot and its PlayPanel's model. Colors are OrbColor ordinals.
+    private static class Team {
+        private final Difficulty difficulty;
+        private final PanelModel model;
+        private final BotBrain brain;
+
+        // Every PlayPanel and Player gets the same seed, so every team starts with the same puzzle and ammunition:
+        private final Random ammunitionGenerator;
+        private final LinkedList<Integer> ammunitionColors = new LinkedList<>();
+        private int shotsFired = 0;
+
+        // The bot. Its phases are the same as a BotPlayer's, but the cannon is only pointed when it fires:
+        private final double cannonX = ORB_RADIUS + PLAYPANEL_WIDTH_PER_PLAYER/2;
+        private double cannonAngle = -90.0; // degrees
+        private final Random offsetGenerator;
+        private boolean aiming = false; // false while the bot is thinking.
+        private int framesLeft = 0; // in the current thinking or aiming phase.
+        private double target;
+
+        Team(int team, Difficulty difficulty, int rows, int seed){
+            this.difficulty = difficulty;
+            model = new PanelModel(team, 1, true, seed, GameSettings.isDeterministicPhysics(), GameSettings.isShooterCollisions(), GameSettings.isBatchedCollisionTests());
+            ammunitionGenerator = new Random(seed);
+
+            // The bot's own choices are seeded differently on each team (otherwise two bots of the same difficulty would
+            // play the same shots), but they still follow from the match seed:
+            offsetGenerator = new Random(seed ^ ((long)(team+1) << 32));
+            brain = new BotBrain(difficulty, model.getSimulation(), offsetGenerator.nextLong());
+
+            // A random puzzle (see PlayPanel.initializeOrbArray):
+            model.fillRandomPuzzle(rows);
+            model.setShotsUntilNewRow(SHOTS_BETWEEN_DROPS);
+            while(ammunitionColors.size()<2) ammunitionColors.add(ammunitionGenerator.nextInt(OrbBoard.NUM_COLORS));
+        }
+
+        // See BotPlayer.tick(). The bot thinks at the start of its thinking phase (the phase only sets how many frames
+        // pass before it moves, since the thinking itself isn't timed). Then it aims for the pre-movement, broad movement, fine movement and firing
+        // phases, and fires at the end. Like BotPlayer.tick(), it skips the intercession phase.
+        void tickBot(){
+            if(framesLeft==0){
+                framesLeft = difficulty.getThinkingFrames(offsetGenerator);
+                target = think();
+            }
+            framesLeft--;
+            if(framesLeft==0){
+                if(aiming){
+                    fire(target + difficulty.getFineMovementOffset()*(2*offsetGenerator.nextDouble()-1.0));
+                    aiming = false;
+                }
+                else if(target<0){
+                    aiming = true;
+                    framesLeft = Math.max(1, difficulty.getPreMovementFrames() + difficulty.getBroadMovementFrames() + difficulty.getFineMovementFrames() + difficulty.getFiringFrames());
+                }
+                // Otherwise, the bot does not see any orbs on the board. It thinks again next frame.
+            }
+        }
+
+        // Runs BotBrain.retarget() on a copy of the team's state, and returns the target angle (or a positive value if
+        // the bot should wait).
+        private double think(){
+            ShootingOrbBuffer shootingOrbsCopy = new ShootingOrbBuffer();
+            shootingOrbsCopy.copyFrom(model.getShootingOrbs());
+            BotBrain.Thought thought = new BotBrain.Thought(model.getBoard().snapshot(), shootingOrbsCopy, ammunitionColors.get(0), cannonX, cannonAngle, BotBrain.NO_DEADLINE);
+            thought.nextAmmunitionColor = ammunitionColors.get(1);
+            thought.shotsUntilNewRow = model.getShotsUntilNewRow();
+            return brain.retarget(thought).target;
+        }
+
+        // See Player.firedOrbs:
+        private void fire(double angle){
+            cannonAngle = angle;
+            int colorOrdinal = ammunitionColors.removeFirst();
+            model.addShootingOrb(cannonX, CANNON_Y_POS, Math.toRadians(angle), Simulation.getOrbSpeed(colorOrdinal), colorOrdinal);
+            shotsFired++;
+            ammunitionColors.add(Simulation.pickAmmunitionColor(model.getBoard(), ammunitionGenerator.nextDouble()));
+        }
+    }
+}
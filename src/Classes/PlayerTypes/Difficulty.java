@@ -0,0 +1,105 @@
+package Classes.PlayerTypes;
+
+import java.util.Random;
+
+import static Classes.Engine.Simulation.DATA_FRAME_RATE;
+
+/**
+ * How well a bot plays: how long each phase of its turn lasts (see BotPlayer.tick()), how far off its aim is, and how
+ * hard it searches for a shot (see BotBrain). Nothing here needs the JavaFX toolkit, so the bots can be run without a
+ * UI (see BotTournament).
+ */
+public enum Difficulty {
+    EASY(0.75, 0.45, 1.0, 0.25, 0.4, 0.30, 15.0, 2.00, 4.0, 3.0, 1.0, 40, 0, 0.0, 0, 0),
+    MEDIUM(0.3, 0.30, 0.5, 0.20, 0.25, 0.15, 10.0, 1.25, 2.0, 2.0, 0.5, 60, 0, 0.0, 0, 0),
+    HARD(0.15, 0.15, .25, 0.15, 0.20, 0.15, 10.0, 0.500, 0.0, 2.0, 0.125, 80, 4, 0.10, 0, 0),
+    EXPERT(0.25, 0.15, .25, 0.15, 0.20, 0.15, 10.0, 0.500, 0.0, 2.0, 0.125, 80, 6, 0.20, 24, 5);
+
+    private int thinkingFrames;
+    private int preMovementFrames;
+    private int broadMovementFrames;
+    private int intercessionFrames;
+    private int fineMovementFrames;
+    private int firingFrames;
+    private double broadMovementOffset; // degrees
+    private double fineMovementOffset; // degrees
+    private double stupidity; // higher number means the computer is more likely to make bad choices.
+    private double coarseAngleIncrement; // degrees. The spacing of the first sweep of simulated shots.
+    private double finestAngleIncrement; // degrees. The search is not refined beyond this spacing.
+    private int angleBudget; // The maximum number of shots simulated each time the bot thinks.
+    private int lookaheadWidth; // The number of first shots whose follow-ups are looked into. 0 means no lookahead.
+    private double lookaheadTime; // seconds. The time budget of the lookahead (it also has to finish thinking on time).
+    private int playouts; // The number of Monte Carlo playouts per first shot. 0 means the lookahead is a 2-shot search instead.
+    private int playoutDepth; // The number of shots in each playout, including the first.
+
+    Difficulty(double thinkingTime, double preMovementTime, double broadMovementTime, double intercessionTime, double fineMovementTime, double firingTime, double broadMovementOffset, double fineMovementOffset, double stupidity,
+               double coarseAngleIncrement, double finestAngleIncrement, int angleBudget, int lookaheadWidth, double lookaheadTime, int playouts, int playoutDepth){
+        thinkingFrames = (int)Math.round(thinkingTime*DATA_FRAME_RATE);
+        preMovementFrames = (int)Math.round(preMovementTime*DATA_FRAME_RATE);
+        broadMovementFrames = (int)Math.round(broadMovementTime*DATA_FRAME_RATE);
+        intercessionFrames = (int)Math.round(intercessionTime*DATA_FRAME_RATE);
+        fineMovementFrames = (int)Math.round(fineMovementTime*DATA_FRAME_RATE);
+        firingFrames = (int)Math.round(firingTime*DATA_FRAME_RATE);
+        this.broadMovementOffset = broadMovementOffset;
+        this.fineMovementOffset = fineMovementOffset;
+        this.stupidity = stupidity;
+        this.coarseAngleIncrement = coarseAngleIncrement;
+        this.finestAngleIncrement = finestAngleIncrement;
+        this.angleBudget = angleBudget;
+        this.lookaheadWidth = lookaheadWidth;
+        this.lookaheadTime = lookaheadTime;
+        this.playouts = playouts;
+        this.playoutDepth = playoutDepth;
+    }
+
+    // The random number generator is the bot's own, so that a bot can be replayed from its seed (see BotTournament).
+    public int getThinkingFrames(Random random){
+        // randomize the amount of thinking time a little:
+        return (int)Math.round(thinkingFrames*2*random.nextDouble() + 1);
+    }
+    public int getPreMovementFrames(){
+        return preMovementFrames;
+    }
+    public int getBroadMovementFrames(){
+        return broadMovementFrames;
+    }
+    public int getIntercessionFrames(){
+        return intercessionFrames;
+    }
+    public int getFineMovementFrames(){
+        return fineMovementFrames;
+    }
+    public int getFiringFrames(){
+        return firingFrames;
+    }
+    public double getBroadMovementOffset(){
+        return broadMovementOffset;
+    }
+    public double getFineMovementOffset(){
+        return fineMovementOffset;
+    }
+    public double getStupidity(){
+        return stupidity;
+    }
+    public double getCoarseAngleIncrement(){
+        return coarseAngleIncrement;
+    }
+    public double getFinestAngleIncrement(){
+        return finestAngleIncrement;
+    }
+    public int getAngleBudget(){
+        return angleBudget;
+    }
+    public int getLookaheadWidth(){
+        return lookaheadWidth;
+    }
+    public double getLookaheadTime(){
+        return lookaheadTime;
+    }
+    public int getPlayouts(){
+        return playouts;
+    }
+    public int getPlayoutDepth(){
+        return playoutDepth;
+    }
+}